@@ -0,0 +1,56 @@
+package com.github.verils.dlock.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 依次以1、8、64个线程运行基准测试，默认报告吞吐量、延迟分布（含p99）以及GC分配速率。命令行参数与JMH一致，指定的参数优先于这里的默认值
+ */
+public class BenchmarkRunner {
+
+    private static final int[] THREADS = {1, 8, 64};
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        int[] threadCounts = commandLine.getThreads().hasValue() ? new int[]{commandLine.getThreads().get()} : THREADS;
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads);
+            if (commandLine.getBenchModes().isEmpty()) {
+                builder.mode(Mode.Throughput).mode(Mode.SampleTime);
+            }
+            if (!commandLine.getTimeUnit().hasValue()) {
+                builder.timeUnit(TimeUnit.MICROSECONDS);
+            }
+            if (!commandLine.getWarmupIterations().hasValue()) {
+                builder.warmupIterations(3);
+            }
+            if (!commandLine.getWarmupTime().hasValue()) {
+                builder.warmupTime(TimeValue.seconds(2));
+            }
+            if (!commandLine.getMeasurementIterations().hasValue()) {
+                builder.measurementIterations(5);
+            }
+            if (!commandLine.getMeasurementTime().hasValue()) {
+                builder.measurementTime(TimeValue.seconds(2));
+            }
+            if (!commandLine.getForkCount().hasValue()) {
+                builder.forks(1);
+            }
+            if (commandLine.getProfilers().isEmpty()) {
+                builder.addProfiler(GCProfiler.class);
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.verils.dlock.benchmark;
+
+import com.github.verils.dlock.redis.RedisClient;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的{@link RedisClient}实现，每次调用都会阻塞{@code latencyMicros}来模拟一次网络往返，并计入当前线程的{@link RoundTrips}
+ */
+public class FakeRedisClient implements RedisClient {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final long latencyNanos;
+
+    public FakeRedisClient(long latencyMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, int expireInSeconds) {
+        return tryAcquireOrTtl(key, value, expireInSeconds) == 0;
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, int expireInSeconds) {
+        roundTrip();
+        Entry entry = new Entry(value, expiresAt(expireInSeconds));
+        Entry current = entries.compute(key, (k, e) -> e == null || e.isExpired() ? entry : e);
+        if (current == entry) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(current.expiresAt - System.nanoTime()));
+    }
+
+    @Override
+    public void expire(String key, int expireInSeconds) {
+        roundTrip();
+        entries.computeIfPresent(key, (k, e) -> e.isExpired() ? null : new Entry(e.value, expiresAt(expireInSeconds)));
+    }
+
+    @Override
+    public String getLock(String key) {
+        roundTrip();
+        Entry entry = entries.get(key);
+        return entry == null || entry.isExpired() ? null : entry.value;
+    }
+
+    @Override
+    public void release(String key) {
+        roundTrip();
+        entries.remove(key);
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        roundTrip();
+        Entry entry = entries.get(key);
+        return entry != null && !entry.isExpired() && entry.value.equals(value) && entries.remove(key, entry);
+    }
+
+    @Override
+    public Set<String> renew(Map<String, String> locks, int expireInSeconds) {
+        roundTrip();
+        Set<String> renewed = new HashSet<>();
+        for (Map.Entry<String, String> lock : locks.entrySet()) {
+            Entry entry = entries.computeIfPresent(lock.getKey(), (k, e) ->
+                    !e.isExpired() && e.value.equals(lock.getValue()) ? new Entry(e.value, expiresAt(expireInSeconds)) : e);
+            if (entry != null && !entry.isExpired() && entry.value.equals(lock.getValue())) {
+                renewed.add(lock.getKey());
+            }
+        }
+        return renewed;
+    }
+
+    private void roundTrip() {
+        RoundTrips.count();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    private static long expiresAt(int expireInSeconds) {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(expireInSeconds);
+    }
+
+    private static class Entry {
+
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+}
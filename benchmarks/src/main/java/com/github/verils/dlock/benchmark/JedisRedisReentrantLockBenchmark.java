@@ -0,0 +1,93 @@
+package com.github.verils.dlock.benchmark;
+
+import com.github.verils.dlock.redis.BackoffStrategy;
+import com.github.verils.dlock.redis.RedisClient;
+import com.github.verils.dlock.redis.RedisReentrantLock;
+import com.github.verils.dlock.redis.client.JedisClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 基于本地redis-server的{@link RedisReentrantLock}加锁、解锁开销，运行前需要在{@code host:port}上启动Redis
+ */
+public class JedisRedisReentrantLockBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedLock {
+
+        @Param("localhost")
+        public String host;
+
+        @Param("6379")
+        public int port;
+
+        @Param({"contended", "uncontended"})
+        public String contention;
+
+        @Param({"false", "true"})
+        public boolean notifyOnRelease;
+
+        JedisPool jedisPool;
+
+        JedisClient redis;
+
+        Lock lock;
+
+        final AtomicInteger keys = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            JedisPoolConfig config = new JedisPoolConfig();
+            config.setMaxTotal(128);
+            jedisPool = new JedisPool(config, host, port);
+            redis = new JedisClient(jedisPool, notifyOnRelease, 0, RoundTrips.METRICS);
+            lock = newLock("bench:lock");
+        }
+
+        @TearDown
+        public void tearDown() {
+            redis.close();
+            jedisPool.close();
+        }
+
+        Lock newLock(String key) {
+            RedisClient client = redis;
+            BackoffStrategy backoff = notifyOnRelease ? BackoffStrategy.adaptive(1, 1000) : BackoffStrategy.fixed(1);
+            return new RedisReentrantLock(client, key, 30, backoff);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLock {
+
+        Lock lock;
+
+        @Setup
+        public void setUp(SharedLock shared) {
+            lock = "contended".equals(shared.contention)
+                    ? shared.lock
+                    : shared.newLock("bench:lock:" + shared.keys.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public void lockUnlock(ThreadLock state, RoundTrips roundTrips) {
+        Lock lock = state.lock;
+        lock.lock();
+        try {
+            Blackhole.consumeCPU(10);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.verils.dlock.benchmark;
+
+import com.github.verils.dlock.Mutex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Mutex}与{@link ReentrantLock}的加锁、解锁开销
+ */
+public class MutexBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedLock {
+
+        @Param({"mutex", "reentrant"})
+        public String type;
+
+        @Param({"contended", "uncontended"})
+        public String contention;
+
+        Lock lock;
+
+        @Setup
+        public void setUp() {
+            lock = newLock(type);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLock {
+
+        Lock lock;
+
+        @Setup
+        public void setUp(SharedLock shared) {
+            lock = "contended".equals(shared.contention) ? shared.lock : newLock(shared.type);
+        }
+    }
+
+    @Benchmark
+    public void lockUnlock(ThreadLock state) {
+        Lock lock = state.lock;
+        lock.lock();
+        try {
+            Blackhole.consumeCPU(10);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Lock newLock(String type) {
+        return "mutex".equals(type) ? new Mutex() : new ReentrantLock();
+    }
+}
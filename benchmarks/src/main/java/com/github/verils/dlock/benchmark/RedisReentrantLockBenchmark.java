@@ -0,0 +1,109 @@
+package com.github.verils.dlock.benchmark;
+
+import com.github.verils.dlock.redis.BackoffStrategy;
+import com.github.verils.dlock.redis.RedisClient;
+import com.github.verils.dlock.redis.RedisReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 基于{@link FakeRedisClient}的{@link RedisReentrantLock}加锁、解锁开销，每次Redis调用注入{@code latencyMicros}的延迟
+ */
+public class RedisReentrantLockBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedLock {
+
+        @Param({"0", "100", "500"})
+        public long latencyMicros;
+
+        @Param({"contended", "uncontended"})
+        public String contention;
+
+        @Param({"0", "16"})
+        public int localHandoffLimit;
+
+        RedisClient redis;
+
+        Lock lock;
+
+        final AtomicInteger keys = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            redis = new FakeRedisClient(latencyMicros);
+            lock = newLock("bench:lock");
+        }
+
+        Lock newLock(String key) {
+            return new RedisReentrantLock(redis, key, 30, BackoffStrategy.fixed(1), null, localHandoffLimit);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLock {
+
+        Lock lock;
+
+        @Setup
+        public void setUp(SharedLock shared) {
+            lock = "contended".equals(shared.contention)
+                    ? shared.lock
+                    : shared.newLock("bench:lock:" + shared.keys.incrementAndGet());
+        }
+    }
+
+    /**
+     * 键已被其他节点持有，每次{@code tryLock()}都会生成新的锁标识并失败
+     */
+    @State(Scope.Thread)
+    public static class HeldLock {
+
+        Lock lock;
+
+        @Setup
+        public void setUp(SharedLock shared) {
+            shared.redis.tryAcquire("bench:held", "other", 3600);
+            lock = shared.newLock("bench:held");
+        }
+    }
+
+    @Benchmark
+    public boolean tryLockHeld(HeldLock state, RoundTrips roundTrips) {
+        return state.lock.tryLock();
+    }
+
+    @Benchmark
+    public void lockUnlock(ThreadLock state, RoundTrips roundTrips) {
+        Lock lock = state.lock;
+        lock.lock();
+        try {
+            Blackhole.consumeCPU(10);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Benchmark
+    public void lockReentrant(ThreadLock state, RoundTrips roundTrips) {
+        Lock lock = state.lock;
+        lock.lock();
+        try {
+            lock.lock();
+            try {
+                Blackhole.consumeCPU(10);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.verils.dlock.benchmark;
+
+import com.github.verils.dlock.metrics.LockMetrics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 每个基准测试线程发起的Redis调用次数。以速率的形式报告，除以基准测试本身的速率即为每次操作的往返次数
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class RoundTrips {
+
+    /**
+     * 把{@link com.github.verils.dlock.redis.client.JedisClient}的每个操作计入调用线程的{@link RoundTrips}
+     */
+    static final LockMetrics METRICS = new LockMetrics() {
+
+        @Override
+        public void commandCompleted(String command, long rttNanos, boolean succeeded) {
+            count();
+        }
+    };
+
+    private static final ThreadLocal<RoundTrips> CURRENT = new ThreadLocal<>();
+
+    public long roundTrips;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        roundTrips = 0;
+        CURRENT.set(this);
+    }
+
+    /**
+     * 当前线程发起了一次Redis调用，当前线程没有{@link RoundTrips}时忽略
+     */
+    static void count() {
+        RoundTrips roundTrips = CURRENT.get();
+        if (roundTrips != null) {
+            roundTrips.roundTrips++;
+        }
+    }
+}
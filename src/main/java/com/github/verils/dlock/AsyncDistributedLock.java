@@ -0,0 +1,27 @@
+package com.github.verils.dlock;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持异步获取的分布式锁。等待锁的过程中不占用调用者的线程，获取成功后通过{@link LockHandle}释放
+ */
+public interface AsyncDistributedLock extends DistributedLock {
+
+    /**
+     * 异步获取锁，直到获取成功为止
+     *
+     * @return 获取成功时完成，结果为持有锁的{@link LockHandle}
+     */
+    CompletionStage<LockHandle> lockAsync();
+
+    /**
+     * 在{@code waitTime}内异步尝试获取锁
+     *
+     * @param waitTime  最长的等待时间
+     * @param leaseTime 获取成功后锁的存活时间
+     * @param unit      时间单位
+     * @return 获取成功时完成，结果为持有锁的{@link LockHandle}；超时未能获取时结果为null
+     */
+    CompletionStage<LockHandle> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit);
+}
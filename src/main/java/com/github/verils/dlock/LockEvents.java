@@ -0,0 +1,53 @@
+package com.github.verils.dlock;
+
+/**
+ * 锁实现向JDK Flight Recorder提交事件的入口。该实现中所有方法都是空的，调用会被JIT编译器消除；
+ * 在Java 11及以上版本中，由多版本JAR中的实现替换为JFR自定义事件，只在记录中启用了这些事件时才有开销
+ */
+public final class LockEvents {
+
+    private LockEvents() {
+    }
+
+    /**
+     * 开始等待锁
+     *
+     * @return 等待的开始，获取到锁后传给{@link #acquired(Object, Class, String, int)}。没有在记录锁事件时为null
+     */
+    public static Object waiting() {
+        return null;
+    }
+
+    /**
+     * 获取到锁，事件的持续时间即等待的时间
+     *
+     * @param waiting   {@link #waiting()}的返回值
+     * @param lockClass 锁的类型
+     * @param key       锁的键名称，本地锁为null
+     * @param retries   获取失败后重试的次数
+     */
+    public static void acquired(Object waiting, Class<?> lockClass, String key, int retries) {
+    }
+
+    /**
+     * 第一次尝试没有获取到锁，锁被其他线程或进程持有
+     */
+    public static void contended(Class<?> lockClass, String key) {
+    }
+
+    /**
+     * 持有中的锁续期成功
+     *
+     * @param leaseMillis 续期后的租约时间
+     */
+    public static void leaseRenewed(Class<?> lockClass, String key, long leaseMillis) {
+    }
+
+    /**
+     * 持有中的锁已过期或被其他持有者获取
+     *
+     * @param detectedBy 发现的途径，{@code watchdog}表示续期时发现，{@code unlock}表示解锁时发现
+     */
+    public static void leaseLost(Class<?> lockClass, String key, String detectedBy) {
+    }
+}
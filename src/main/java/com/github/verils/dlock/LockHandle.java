@@ -0,0 +1,19 @@
+package com.github.verils.dlock;
+
+/**
+ * 通过异步方式获取到的锁。锁不属于任何线程，可以在任意线程中释放
+ */
+public interface LockHandle extends AutoCloseable {
+
+    /**
+     * 释放锁
+     *
+     * @throws IllegalMonitorStateException 锁已被释放、已过期，或者已被其他持有者占用
+     */
+    void unlock();
+
+    @Override
+    default void close() {
+        unlock();
+    }
+}
@@ -16,12 +16,22 @@ public class Mutex implements Lock {
 
     @Override
     public void lock() {
-        sync.acquire(1);
+        Object waiting = LockEvents.waiting();
+        if (!sync.tryAcquire(1)) {
+            LockEvents.contended(Mutex.class, null);
+            sync.acquire(1);
+        }
+        LockEvents.acquired(waiting, Mutex.class, null, 0);
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        sync.acquireInterruptibly(1);
+        Object waiting = LockEvents.waiting();
+        if (!sync.tryAcquire(1)) {
+            LockEvents.contended(Mutex.class, null);
+            sync.acquireInterruptibly(1);
+        }
+        LockEvents.acquired(waiting, Mutex.class, null, 0);
     }
 
     @Override
@@ -31,7 +41,17 @@ public class Mutex implements Lock {
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        return sync.tryAcquireNanos(1, unit.toNanos(time));
+        Object waiting = LockEvents.waiting();
+        if (sync.tryAcquire(1)) {
+            LockEvents.acquired(waiting, Mutex.class, null, 0);
+            return true;
+        }
+        LockEvents.contended(Mutex.class, null);
+        if (sync.tryAcquireNanos(1, unit.toNanos(time))) {
+            LockEvents.acquired(waiting, Mutex.class, null, 0);
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -0,0 +1,180 @@
+package com.github.verils.dlock.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 默认的指标实现，在内存中用{@link LatencyRecorder}记录耗时分布，用{@link LongAdder}计数，由调用者定期读取后输出到日志或者监控系统
+ * <p>
+ * 锁的指标按键的模式聚合。默认把键中以{@code :}分隔、包含数字的段替换为{@code *}，例如{@code order:1024:lock}记为{@code order:*:lock}，
+ * 避免每个业务编号占用一组直方图。每组直方图约占用20KB内存，需要按键统计时传入{@link Function#identity()}，但要确保键的数量是有限的
+ */
+public class HistogramLockMetrics implements LockMetrics {
+
+    private static final String WILDCARD = "*";
+
+    private final Function<String, String> keyPattern;
+
+    private final ConcurrentMap<String, KeyStats> keys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CommandStats> commands = new ConcurrentHashMap<>();
+
+    public HistogramLockMetrics() {
+        this(HistogramLockMetrics::patternOf);
+    }
+
+    /**
+     * @param keyPattern Maps a lock key to the name its metrics are aggregated under
+     */
+    public HistogramLockMetrics(Function<String, String> keyPattern) {
+        this.keyPattern = keyPattern;
+    }
+
+    @Override
+    public void lockAcquired(String key, long waitNanos, int retries) {
+        KeyStats stats = statsOf(key);
+        stats.waitTime.record(waitNanos);
+        if (retries > 0) {
+            stats.retries.add(retries);
+        }
+    }
+
+    @Override
+    public void tryLockFailed(String key) {
+        statsOf(key).failedTryLocks.increment();
+    }
+
+    @Override
+    public void lockReleased(String key, long holdNanos) {
+        statsOf(key).holdTime.record(holdNanos);
+    }
+
+    @Override
+    public void commandCompleted(String command, long rttNanos, boolean succeeded) {
+        CommandStats stats = commands.get(command);
+        if (stats == null) {
+            stats = commands.computeIfAbsent(command, name -> new CommandStats());
+        }
+        stats.roundTrip.record(rttNanos);
+        if (!succeeded) {
+            stats.failures.increment();
+        }
+    }
+
+    /**
+     * @return 按键的模式统计的锁指标
+     */
+    public Map<String, KeyStats> getKeys() {
+        return Collections.unmodifiableMap(keys);
+    }
+
+    /**
+     * @return 按操作名称统计的Redis访问指标
+     */
+    public Map<String, CommandStats> getCommands() {
+        return Collections.unmodifiableMap(commands);
+    }
+
+    private KeyStats statsOf(String key) {
+        String pattern = keyPattern.apply(key);
+        KeyStats stats = keys.get(pattern);
+        if (stats == null) {
+            stats = keys.computeIfAbsent(pattern, name -> new KeyStats());
+        }
+        return stats;
+    }
+
+    /**
+     * 把以{@code :}分隔、包含数字的段替换为{@code *}
+     */
+    static String patternOf(String key) {
+        StringBuilder pattern = null;
+        int start = 0;
+        while (start <= key.length()) {
+            int end = key.indexOf(':', start);
+            if (end < 0) {
+                end = key.length();
+            }
+            boolean numbered = false;
+            for (int i = start; i < end && !numbered; i++) {
+                numbered = Character.isDigit(key.charAt(i));
+            }
+            if (numbered && pattern == null) {
+                pattern = new StringBuilder(key.length()).append(key, 0, start);
+            }
+            if (pattern != null) {
+                pattern.append(numbered ? WILDCARD : key.substring(start, end));
+                if (end < key.length()) {
+                    pattern.append(':');
+                }
+            }
+            start = end + 1;
+        }
+        return pattern != null ? pattern.toString() : key;
+    }
+
+    /**
+     * 一组锁的指标
+     */
+    public static class KeyStats {
+
+        private final LatencyRecorder waitTime = new LatencyRecorder();
+        private final LatencyRecorder holdTime = new LatencyRecorder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder failedTryLocks = new LongAdder();
+
+        /**
+         * @return 获取锁的等待时间，记录数即获取成功的次数
+         */
+        public LatencyRecorder getWaitTime() {
+            return waitTime;
+        }
+
+        /**
+         * @return 锁的持有时间
+         */
+        public LatencyRecorder getHoldTime() {
+            return holdTime;
+        }
+
+        /**
+         * @return 获取锁时重试的总次数
+         */
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        /**
+         * @return {@code tryLock}失败的次数
+         */
+        public long getFailedTryLocks() {
+            return failedTryLocks.sum();
+        }
+    }
+
+    /**
+     * 一种Redis操作的指标
+     */
+    public static class CommandStats {
+
+        private final LatencyRecorder roundTrip = new LatencyRecorder();
+        private final LongAdder failures = new LongAdder();
+
+        /**
+         * @return 往返时间，记录数即执行的次数
+         */
+        public LatencyRecorder getRoundTrip() {
+            return roundTrip;
+        }
+
+        /**
+         * @return 抛出异常的次数
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.verils.dlock.metrics;
+
+/**
+ * 锁的指标监听器。锁在获取、释放以及访问Redis时回调，实现类把这些事件记录到自己的指标系统中，例如{@link HistogramLockMetrics}或者Micrometer
+ * <p>
+ * 回调发生在加锁和解锁的线程上，实现类需要是线程安全的，并且不能阻塞。所有方法都有空的默认实现，只需要覆盖关心的事件
+ */
+public interface LockMetrics {
+
+    /**
+     * 不记录任何指标
+     */
+    LockMetrics NOOP = new LockMetrics() {
+    };
+
+    /**
+     * 获取到锁，重入时不回调
+     *
+     * @param key       锁的键名称
+     * @param waitNanos 从调用加锁方法到获取成功的时间，包括在本地线程队列中等待的时间
+     * @param retries   获取失败后重试的次数，一次就获取成功时为0
+     */
+    default void lockAcquired(String key, long waitNanos, int retries) {
+    }
+
+    /**
+     * {@code tryLock}没有获取到锁，包括锁被其他线程或进程持有以及访问Redis出错
+     *
+     * @param key 锁的键名称
+     */
+    default void tryLockFailed(String key) {
+    }
+
+    /**
+     * 释放了锁，重入的释放不回调。锁移交给本地排队的线程时同样回调，持有时间只计算当前线程持有的部分
+     *
+     * @param key       锁的键名称
+     * @param holdNanos 从获取到锁到释放的时间
+     */
+    default void lockReleased(String key, long holdNanos) {
+    }
+
+    /**
+     * 执行完一次Redis操作
+     *
+     * @param command   操作名称，例如{@code tryAcquire}、{@code release}。限制了并发数的客户端等待执行名额超时时，
+     *                  以{@code .queued}结尾的名称报告等待的时间，此时没有发出命令
+     * @param rttNanos  从发出命令到收到响应的时间，不包括从连接池借用连接的时间
+     * @param succeeded 是否正常返回，抛出异常时为false
+     */
+    default void commandCompleted(String command, long rttNanos, boolean succeeded) {
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.verils.dlock.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 滑动时间窗口内按等待时间排序的热点键。窗口均分为若干片，每一片单独累计各个键的等待时间，过期的片在下次写入时被清空重用，
+ * 统计的范围在窗口时间减去一片到窗口时间之间
+ * <p>
+ * 与{@link HistogramLockMetrics}不同，这里按完整的键统计，以便找出需要拆分的键。每一片最多记录{@code maxKeys}个键，
+ * 超过上限后按照Space-Saving算法替换累计等待时间最短的键，新的键继承被替换的键的累计值，排名靠前的键不会被大量一次性的键挤出，
+ * 代价是后来的键的等待时间可能被高估
+ */
+public class WaitTimeWindow implements LockMetrics {
+
+    private static final int DEFAULT_MAX_KEYS = 1024;
+
+    private final long sliceNanos;
+    private final int maxKeys;
+    private final Slice[] slices;
+
+    /**
+     * Create a window covering the last minute in six slices, each tracking at most {@code 1024} keys.
+     */
+    public WaitTimeWindow() {
+        this(Duration.ofMinutes(1), 6);
+    }
+
+    /**
+     * @param window Length of time the ranking covers
+     * @param slices Number of slices the window is divided into, more slices make it slide more smoothly
+     */
+    public WaitTimeWindow(Duration window, int slices) {
+        this(window, slices, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * @param window  Length of time the ranking covers
+     * @param slices  Number of slices the window is divided into, more slices make it slide more smoothly
+     * @param maxKeys Maximum number of keys tracked by each slice, bounding the memory of the window
+     */
+    public WaitTimeWindow(Duration window, int slices, int maxKeys) {
+        if (slices <= 0) {
+            throw new IllegalArgumentException("Slices must be positive");
+        }
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("Max keys must be positive");
+        }
+        this.sliceNanos = Math.max(1, window.toNanos() / slices);
+        this.maxKeys = maxKeys;
+        this.slices = new Slice[slices];
+        for (int i = 0; i < slices; i++) {
+            this.slices[i] = new Slice();
+        }
+    }
+
+    @Override
+    public void lockAcquired(String key, long waitNanos, int retries) {
+        long epoch = Math.floorDiv(System.nanoTime(), sliceNanos);
+        Slice slice = slices[(int) Math.floorMod(epoch, (long) slices.length)];
+        slice.rotate(epoch);
+        slice.record(key, waitNanos, maxKeys);
+    }
+
+    /**
+     * @param k 最多返回的键数量
+     * @return 窗口内累计等待时间最长的{@code k}个键，按等待时间从长到短排列
+     */
+    public List<HotKey> top(int k) {
+        long epoch = Math.floorDiv(System.nanoTime(), sliceNanos);
+        Map<String, HotKey> merged = new HashMap<>();
+        for (Slice slice : slices) {
+            if (slice.epoch <= epoch - slices.length) {
+                continue;
+            }
+            Map<String, KeyWait> waits = slice.waits;
+            for (Map.Entry<String, KeyWait> entry : waits.entrySet()) {
+                KeyWait wait = entry.getValue();
+                merged.computeIfAbsent(entry.getKey(), HotKey::new)
+                        .merge(wait.total.sum(), wait.count.sum(), wait.max.get());
+            }
+        }
+        List<HotKey> ranked = new ArrayList<>(merged.values());
+        ranked.sort(Comparator.comparingLong((HotKey key) -> key.totalNanos).reversed());
+        return Collections.unmodifiableList(ranked.subList(0, Math.min(k, ranked.size())));
+    }
+
+    private static class Slice {
+
+        private volatile long epoch = Long.MIN_VALUE;
+        private volatile Map<String, KeyWait> waits = new ConcurrentHashMap<>();
+
+        /**
+         * 片已属于更早的周期时清空。先替换计数再更新周期，看到新周期的线程一定写入新的计数
+         */
+        private void rotate(long epoch) {
+            if (this.epoch == epoch) {
+                return;
+            }
+            synchronized (this) {
+                if (this.epoch != epoch) {
+                    waits = new ConcurrentHashMap<>();
+                    this.epoch = epoch;
+                }
+            }
+        }
+
+        private void record(String key, long waitNanos, int maxKeys) {
+            Map<String, KeyWait> waits = this.waits;
+            KeyWait wait = waits.get(key);
+            if (wait == null) {
+                wait = waits.size() < maxKeys
+                        ? waits.computeIfAbsent(key, k -> new KeyWait())
+                        : replaceMin(waits, key, maxKeys);
+            }
+            wait.total.add(waitNanos);
+            wait.count.increment();
+            long current;
+            while (waitNanos > (current = wait.max.get()) && !wait.max.compareAndSet(current, waitNanos)) {
+                // 其他线程同时更新了最大值，重新比较
+            }
+        }
+
+        /**
+         * 片中的键达到上限时，用{@code key}替换累计等待时间最短的键，并继承其累计值。只在达到上限后调用，
+         * 替换期间其他线程对被替换的键的写入会丢失
+         */
+        private synchronized KeyWait replaceMin(Map<String, KeyWait> waits, String key, int maxKeys) {
+            KeyWait wait = waits.get(key);
+            if (wait != null) {
+                return wait;
+            }
+            wait = new KeyWait();
+            if (waits.size() >= maxKeys) {
+                Map.Entry<String, KeyWait> min = null;
+                for (Map.Entry<String, KeyWait> entry : waits.entrySet()) {
+                    if (min == null || entry.getValue().total.sum() < min.getValue().total.sum()) {
+                        min = entry;
+                    }
+                }
+                if (min != null && waits.remove(min.getKey(), min.getValue())) {
+                    wait.total.add(min.getValue().total.sum());
+                    wait.count.add(min.getValue().count.sum());
+                }
+            }
+            waits.put(key, wait);
+            return wait;
+        }
+    }
+
+    private static class KeyWait {
+
+        private final LongAdder total = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+    }
+
+    /**
+     * 一个键在窗口内的等待情况
+     */
+    public static class HotKey {
+
+        private final String key;
+        private long totalNanos;
+        private long acquisitions;
+        private long maxNanos;
+
+        private HotKey(String key) {
+            this.key = key;
+        }
+
+        private void merge(long totalNanos, long acquisitions, long maxNanos) {
+            this.totalNanos += totalNanos;
+            this.acquisitions += acquisitions;
+            this.maxNanos = Math.max(this.maxNanos, maxNanos);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return 窗口内所有获取的等待时间之和
+         */
+        public long getWaitTime(TimeUnit unit) {
+            return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return 窗口内单次获取的最长等待时间
+         */
+        public long getMaxWaitTime(TimeUnit unit) {
+            return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return 窗口内获取成功的次数
+         */
+        public long getAcquisitions() {
+            return acquisitions;
+        }
+
+        @Override
+        public String toString() {
+            return "HotKey{key='" + key + "', waitMillis=" + getWaitTime(TimeUnit.MILLISECONDS)
+                    + ", maxWaitMillis=" + getMaxWaitTime(TimeUnit.MILLISECONDS) + ", acquisitions=" + acquisitions + '}';
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应退避策略。记录每次获取锁实际等待时长的指数移动平均值，作为锁通常被释放所需时间的估计；
+ * 每次等待取该估计值与持有者剩余存活时间（PTTL）中较小的一个，并在其后半段随机取值以错开各节点的重试
+ */
+class AdaptiveBackoff implements BackoffStrategy {
+
+    /**
+     * 移动平均的权重为1/8
+     */
+    private static final int SMOOTHING_SHIFT = 3;
+
+    private final long minMillis;
+    private final long maxMillis;
+
+    private final AtomicLong estimatedWait;
+
+    AdaptiveBackoff(long minMillis, long maxMillis) {
+        if (minMillis <= 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Require 0 < minMillis <= maxMillis");
+        }
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.estimatedWait = new AtomicLong(minMillis);
+    }
+
+    @Override
+    public long nextDelay(int attempt, long previousDelay, long remainingMillis) {
+        long target = estimatedWait.get();
+        if (remainingMillis > 0) {
+            target = Math.min(target, remainingMillis);
+        }
+        long delay = target / 2 + ThreadLocalRandom.current().nextLong(target / 2 + 1);
+        return Math.max(minMillis, Math.min(maxMillis, delay));
+    }
+
+    @Override
+    public boolean requiresRemainingTtl() {
+        return true;
+    }
+
+    @Override
+    public void acquired(int attempts, long waitedMillis) {
+        if (attempts == 0) {
+            return;
+        }
+        long sample = Math.max(minMillis, Math.min(maxMillis, waitedMillis));
+        estimatedWait.getAndUpdate(current -> current + ((sample - current) >> SMOOTHING_SHIFT));
+    }
+
+    long getEstimatedWait() {
+        return estimatedWait.get();
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.LockHandle;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 一次异步获取锁的过程。每次尝试由调度线程池提交，失败后按照退避策略重新调度，等待期间不占用线程。
+ * 尝试本身通过{@link LockThreads#blockingExecutor()}执行，Redis调用进行期间占用该执行器的一个线程
+ */
+class AsyncAcquisition implements Runnable {
+
+    private final RedisClient redis;
+    private final String key;
+    private final String value;
+    private final Duration lease;
+    private final BackoffStrategy backoff;
+    private final Supplier<LockHandle> handleFactory;
+
+    /**
+     * 放弃获取的时间点，基于{@link System#nanoTime()}；小于0表示一直等待
+     */
+    private final long deadline;
+
+    private final ScheduledExecutorService scheduler = AsyncLockScheduler.get();
+    private final Executor executor = LockThreads.blockingExecutor();
+
+    private final CompletableFuture<LockHandle> future = new CompletableFuture<>();
+
+    private final long first = System.nanoTime();
+    private int attempts;
+    private long delay;
+
+    AsyncAcquisition(RedisClient redis, String key, String value, Duration lease, BackoffStrategy backoff,
+                     long waitNanos, Supplier<LockHandle> handleFactory) {
+        this.redis = redis;
+        this.key = key;
+        this.value = value;
+        this.lease = lease;
+        this.backoff = backoff;
+        this.handleFactory = handleFactory;
+        this.deadline = waitNanos < 0 ? -1 : first + waitNanos;
+    }
+
+    CompletableFuture<LockHandle> start() {
+        scheduler.execute(() -> executor.execute(this));
+        return future;
+    }
+
+    @Override
+    public void run() {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            long remaining = backoff.requiresRemainingTtl()
+                    ? redis.tryAcquireOrTtl(key, value, lease)
+                    : redis.tryAcquire(key, value, lease) ? 0 : -1;
+            if (remaining == 0) {
+                backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - first));
+                LockHandle handle = handleFactory.get();
+                if (!future.complete(handle)) {
+                    handle.unlock();
+                }
+                return;
+            }
+            attempts += 1;
+            delay = backoff.nextDelay(attempts, delay, remaining);
+            long delayNanos = TimeUnit.MILLISECONDS.toNanos(delay);
+            if (deadline >= 0) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    future.complete(null);
+                    return;
+                }
+                delayNanos = Math.min(delayNanos, left);
+            }
+            scheduler.schedule(() -> executor.execute(this), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步获取锁共享的调度线程池，只负责在退避时间到达后提交下一次尝试。等待下一次尝试的获取请求只是一个定时任务，不占用线程；
+ * 尝试中的Redis调用在{@link LockThreads#blockingExecutor()}中执行，占用其中的一个线程，慢的Redis不会阻塞调度线程
+ */
+final class AsyncLockScheduler {
+
+    private static final ScheduledExecutorService SCHEDULER = newScheduler();
+
+    private AsyncLockScheduler() {
+    }
+
+    static ScheduledExecutorService get() {
+        return SCHEDULER;
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dlock-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 获取分布式锁失败后的退避策略，决定下一次尝试之前需要等待多久。实现必须是线程安全的，同一个策略可以被多个锁共享
+ */
+@FunctionalInterface
+public interface BackoffStrategy {
+
+    /**
+     * 计算下一次尝试之前的等待时间
+     *
+     * @param attempt         本次获取过程中已失败的次数，从1开始
+     * @param previousDelay   上一次的等待时间，首次失败时为0
+     * @param remainingMillis 当前持有者的锁剩余的存活时间，未知时为负数
+     * @return 等待的毫秒数
+     */
+    long nextDelay(int attempt, long previousDelay, long remainingMillis);
+
+    /**
+     * 是否需要在获取失败时得到持有者剩余的存活时间。返回true时，锁会通过{@link RedisClient#tryAcquireOrTtl(String, String, int)}获取锁
+     */
+    default boolean requiresRemainingTtl() {
+        return false;
+    }
+
+    /**
+     * 成功获取锁后回调，可用于调整后续的等待时间
+     *
+     * @param attempts      获取成功之前失败的次数
+     * @param waitedMillis  从首次尝试到获取成功经过的毫秒数
+     */
+    default void acquired(int attempts, long waitedMillis) {
+    }
+
+    /**
+     * 每次等待固定的时间
+     */
+    static BackoffStrategy fixed(long delayMillis) {
+        return (attempt, previousDelay, remainingMillis) -> delayMillis;
+    }
+
+    /**
+     * 等待时间从{@code baseMillis}开始逐次翻倍，不超过{@code maxMillis}
+     */
+    static BackoffStrategy exponential(long baseMillis, long maxMillis) {
+        return (attempt, previousDelay, remainingMillis) -> {
+            int shift = Math.min(attempt - 1, 30);
+            return Math.min(maxMillis, baseMillis << shift);
+        };
+    }
+
+    /**
+     * 去相关抖动：在{@code baseMillis}与上一次等待时间的3倍之间随机取值，不超过{@code maxMillis}，避免多个节点同时重试
+     */
+    static BackoffStrategy decorrelatedJitter(long baseMillis, long maxMillis) {
+        return (attempt, previousDelay, remainingMillis) -> {
+            long upper = Math.max(baseMillis, previousDelay) * 3;
+            long delay = ThreadLocalRandom.current().nextLong(baseMillis, upper + 1);
+            return Math.min(maxMillis, delay);
+        };
+    }
+
+    /**
+     * 自适应退避：根据持有者剩余的存活时间与历史等待时长，估计锁被释放的时间点
+     *
+     * @see AdaptiveBackoff
+     */
+    static BackoffStrategy adaptive(long minMillis, long maxMillis) {
+        return new AdaptiveBackoff(minMillis, maxMillis);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.verils.dlock.redis;
+
+import java.time.Duration;
+
+/**
+ * 支持以字节数组传递键和值的{@link RedisClient}。锁的键名称在锁的生命周期内不会改变，锁只需编码一次，之后的每次调用都直接使用编码后的字节，
+ * 省去重复的字符串编码与内存分配
+ * <p>
+ * 键名称按UTF-8编码，锁标识只包含ASCII字符。字节数组只在调用期间有效，实现不能保存对它们的引用
+ */
+public interface BinaryRedisClient extends RedisClient {
+
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquire(String, String, Duration)}相同
+     *
+     * @param key   插入Redis的键名称
+     * @param value 插入Redis的键值
+     * @param lease 键的过期时间
+     * @return true，表示成功获取锁
+     */
+    boolean tryAcquire(byte[] key, byte[] value, Duration lease);
+
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquireOrTtl(String, String, Duration)}相同
+     *
+     * @param key   插入Redis的键名称
+     * @param value 插入Redis的键值
+     * @param lease 键的过期时间
+     * @return 0，表示成功获取锁。大于0表示锁剩余的存活毫秒数；小于0表示剩余存活时间未知
+     */
+    default long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease) {
+        return tryAcquire(key, value, lease) ? 0 : -1;
+    }
+
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquireOrTtl(String, String, Duration, Duration)}相同
+     *
+     * @param key     插入Redis的键名称
+     * @param value   插入Redis的键值
+     * @param lease   键的过期时间
+     * @param timeout 本次调用的最长耗时，超时抛出运行时异常
+     * @return 0，表示成功获取锁。大于0表示锁剩余的存活毫秒数；小于0表示剩余存活时间未知
+     */
+    default long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease, Duration timeout) {
+        return tryAcquireOrTtl(key, value, lease);
+    }
+
+    /**
+     * 重置键的过期时间，行为与{@link #expire(String, Duration)}相同
+     *
+     * @param key   需要重置的键名称
+     * @param lease 键的过期时间
+     */
+    void expire(byte[] key, Duration lease);
+
+    /**
+     * 获取键对应的值，行为与{@link #getLock(String)}相同
+     *
+     * @param key 查询的键名称
+     * @return 键对应的值，键不存在时返回null
+     */
+    byte[] getLock(byte[] key);
+
+    /**
+     * 释放分布式锁，行为与{@link #release(String, String)}相同
+     *
+     * @param key   删除的键名称
+     * @param value 分布式锁的唯一标识
+     * @return true，表示锁已被释放
+     */
+    boolean release(byte[] key, byte[] value);
+}
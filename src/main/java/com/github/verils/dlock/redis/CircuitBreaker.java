@@ -0,0 +1,239 @@
+package com.github.verils.dlock.redis;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 访问Redis的熔断器。统计最近一段时间内获取锁的调用，出错或者慢调用的比例超过阈值时熔断，熔断期间锁不再访问Redis，
+ * 而是按照{@link Fallback}立即失败或者退化为本地锁，获取锁的耗时不会随Redis变慢而增长
+ * <p>
+ * 熔断一段时间后进入半开状态，放行一次探测调用，成功则恢复，失败则继续熔断。只有探测调用的结果决定状态的转换，
+ * 熔断之前放行、在半开状态下才返回的调用照常计入统计。同一个Redis上的锁应当共享一个熔断器
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private static final int BUCKETS = 10;
+
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final int minimumCalls;
+    private final long bucketNanos;
+    private final long openNanos;
+
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    /**
+     * 半开状态下获得放行的探测线程，没有探测时为null
+     */
+    private final AtomicReference<Thread> probe = new AtomicReference<>();
+    private volatile long openedAt;
+
+    /**
+     * Create a breaker opening for 5 seconds when at least half of the last 10 seconds' calls, and no fewer than 20
+     * calls, failed or took longer than 1 second.
+     */
+    public CircuitBreaker() {
+        this(0.5, Duration.ofSeconds(1), 0.5, 20, Duration.ofSeconds(10), Duration.ofSeconds(5));
+    }
+
+    /**
+     * @param failureRateThreshold  Ratio of failed calls that opens the breaker, between 0 and 1
+     * @param slowCallDuration      Calls taking at least this long are slow
+     * @param slowCallRateThreshold Ratio of slow calls that opens the breaker, between 0 and 1
+     * @param minimumCalls          Number of calls in the window before the ratios are evaluated
+     * @param window                Length of time the ratios are computed over
+     * @param openDuration          How long the breaker stays open before probing redis again
+     */
+    public CircuitBreaker(double failureRateThreshold, Duration slowCallDuration, double slowCallRateThreshold,
+                          int minimumCalls, Duration window, Duration openDuration) {
+        if (minimumCalls <= 0) {
+            throw new IllegalArgumentException("Minimum calls must be positive");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.bucketNanos = Math.max(1, window.toNanos() / BUCKETS);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * @return 是否允许访问Redis。半开状态下只放行一次探测调用，放行后必须由同一个线程通过{@link #onSuccess(long)}或{@link #onError(long)}报告结果
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos || !state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                return false;
+            }
+            log.info("Circuit breaker half-opened, probing redis");
+        }
+        return probe.compareAndSet(null, Thread.currentThread());
+    }
+
+    /**
+     * 报告一次正常返回的调用
+     *
+     * @param durationNanos 调用的耗时
+     */
+    public void onSuccess(long durationNanos) {
+        boolean slow = durationNanos >= slowCallNanos;
+        if (isProbe()) {
+            if (slow) {
+                reopen();
+            } else {
+                close();
+            }
+            return;
+        }
+        Bucket bucket = record(slow, false);
+        if (slow) {
+            evaluate(bucket);
+        }
+    }
+
+    /**
+     * 报告一次抛出异常的调用
+     *
+     * @param durationNanos 调用的耗时
+     */
+    public void onError(long durationNanos) {
+        if (isProbe()) {
+            reopen();
+            return;
+        }
+        evaluate(record(durationNanos >= slowCallNanos, true));
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 当前线程是否是半开状态下的探测线程，其他线程报告的是熔断之前放行的调用
+     */
+    private boolean isProbe() {
+        return state.get() == State.HALF_OPEN && probe.get() == Thread.currentThread();
+    }
+
+    private Bucket record(boolean slow, boolean failed) {
+        long epoch = Math.floorDiv(System.nanoTime(), bucketNanos);
+        int index = (int) Math.floorMod(epoch, (long) BUCKETS);
+        Bucket bucket = buckets.get(index);
+        while (bucket == null || bucket.epoch != epoch) {
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                bucket = fresh;
+            } else {
+                bucket = buckets.get(index);
+            }
+        }
+        bucket.calls.increment();
+        if (slow) {
+            bucket.slowCalls.increment();
+        }
+        if (failed) {
+            bucket.failedCalls.increment();
+        }
+        return bucket;
+    }
+
+    /**
+     * 统计窗口内的调用，比例超过阈值时熔断
+     */
+    private void evaluate(Bucket latest) {
+        long calls = 0;
+        long slowCalls = 0;
+        long failedCalls = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && latest.epoch - bucket.epoch < BUCKETS) {
+                calls += bucket.calls.sum();
+                slowCalls += bucket.slowCalls.sum();
+                failedCalls += bucket.failedCalls.sum();
+            }
+        }
+        if (calls < minimumCalls) {
+            return;
+        }
+        if (failedCalls >= calls * failureRateThreshold || slowCalls >= calls * slowCallRateThreshold) {
+            if (state.compareAndSet(State.CLOSED, State.OPEN)) {
+                openedAt = System.nanoTime();
+                log.warn("Circuit breaker opened, {} of {} calls failed and {} were slow", failedCalls, calls, slowCalls);
+            }
+        }
+    }
+
+    private void reopen() {
+        openedAt = System.nanoTime();
+        state.set(State.OPEN);
+        probe.set(null);
+        log.warn("Circuit breaker reopened, probing redis failed");
+    }
+
+    private void close() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, null);
+        }
+        state.set(State.CLOSED);
+        probe.set(null);
+        log.info("Circuit breaker closed");
+    }
+
+    public enum State {
+
+        /**
+         * 正常访问Redis
+         */
+        CLOSED,
+
+        /**
+         * 熔断中，不访问Redis
+         */
+        OPEN,
+
+        /**
+         * 放行一次探测调用
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 熔断期间获取锁的方式
+     */
+    public enum Fallback {
+
+        /**
+         * {@code lock}抛出{@link CircuitBreakerOpenException}，{@code tryLock}返回false
+         */
+        FAIL_FAST,
+
+        /**
+         * 只在本地线程之间互斥，不访问Redis。其他进程可能同时持有同一个锁，只适用于幂等的操作
+         */
+        LOCAL_ONLY
+    }
+
+    private static class Bucket {
+
+        private final long epoch;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final LongAdder failedCalls = new LongAdder();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.verils.dlock.redis;
+
+/**
+ * 熔断期间获取锁时抛出，表示没有访问Redis就放弃了获取
+ */
+public class CircuitBreakerOpenException extends IllegalStateException {
+
+    public CircuitBreakerOpenException(String key) {
+        super("Circuit breaker is open, cannot acquire lock: " + key);
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.verils.dlock.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一次{@link WorkClaimer#claim(Collection, int)}认领到的键，所有的键共享同一个锁标识。续期和释放都是批量完成的，每次只需一次Redis调用
+ * <p>
+ * 该对象是线程安全的，关闭时释放所有仍持有的键。Redis调用在锁之外执行，不会在虚拟线程中占用载体线程
+ */
+public class Claim implements AutoCloseable {
+
+    private final RedisClient redis;
+    private final String token;
+    private final int expireInSeconds;
+
+    /**
+     * 保护{@link #keys}，只在读写集合时持有
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Set<String> keys;
+
+    Claim(RedisClient redis, String token, int expireInSeconds, Collection<String> keys) {
+        this.redis = redis;
+        this.token = token;
+        this.expireInSeconds = expireInSeconds;
+        this.keys = new LinkedHashSet<>(keys);
+    }
+
+    /**
+     * @return 所有键共享的锁标识
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return 仍持有的键名称，按认领的顺序排列
+     */
+    public List<String> getKeys() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(keys));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return keys.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量续期仍持有的键。已过期或已被其他持有者占用的键不再被持有
+     *
+     * @return 续期成功的键名称
+     */
+    public Set<String> renew() {
+        Map<String, String> locks;
+        lock.lock();
+        try {
+            if (keys.isEmpty()) {
+                return Collections.emptySet();
+            }
+            locks = new LinkedHashMap<>(keys.size() * 2);
+            for (String key : keys) {
+                locks.put(key, token);
+            }
+        } finally {
+            lock.unlock();
+        }
+        Set<String> renewed = redis.renew(locks, expireInSeconds);
+        lock.lock();
+        try {
+            keys.retainAll(renewed);
+            return Collections.unmodifiableSet(new LinkedHashSet<>(keys));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量释放{@code keys}中仍持有的键，其余的键继续持有
+     *
+     * @return true，表示这些键都已被释放。false表示其中有键已过期、已被其他持有者占用，或者之前已被释放
+     */
+    public boolean release(Collection<String> keys) {
+        List<String> held = new ArrayList<>(keys.size());
+        lock.lock();
+        try {
+            for (String key : keys) {
+                if (this.keys.remove(key)) {
+                    held.add(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        boolean released = held.size() == keys.size();
+        if (!held.isEmpty()) {
+            released &= redis.releaseAll(held, token);
+        }
+        return released;
+    }
+
+    /**
+     * 释放所有仍持有的键
+     */
+    @Override
+    public void close() {
+        List<String> held;
+        lock.lock();
+        try {
+            if (keys.isEmpty()) {
+                return;
+            }
+            held = new ArrayList<>(keys);
+            keys.clear();
+        } finally {
+            lock.unlock();
+        }
+        redis.releaseAll(held, token);
+    }
+}
@@ -0,0 +1,396 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.DistributedLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分布式读写锁。读锁可以被多个进程同时持有，写锁与其他所有持有者互斥，锁的状态保存在一个Redis哈希中，由{@link ReadWriteRedisClient}维护
+ * <p>
+ * 进程内的同步由{@link ReentrantReadWriteLock}完成。本进程内的读线程共享同一个Redis读锁：第一个读线程获取Redis读锁，之后的读线程只增加本地计数，
+ * 最后一个读线程释放Redis读锁，因此无论有多少个本地读线程，都只需要一次Redis调用。读锁和写锁都可重入，持有写锁的线程可以获取读锁，即写锁降级
+ * <p>
+ * 该锁不接受看门狗。读线程加入或写锁重入时，如果剩余租约不足一半，会重置租约
+ */
+@Slf4j
+public class DistributedReadWriteLock implements ReadWriteLock {
+
+    private final ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+
+    private final ReadWriteRedisClient redis;
+
+    private final String key;
+    private final int expireInSeconds;
+    private final BackoffStrategy backoff;
+
+    /**
+     * 本实例的锁标识，读锁与写锁共用，Redis以此判断写锁降级
+     */
+    private final String token = LockToken.next();
+
+    /**
+     * 保护本地读计数，第一个读线程在持有该锁时获取Redis读锁，其余读线程等待其完成
+     */
+    private final ReentrantLock readLease = new ReentrantLock();
+    private int readers;
+    private long readDeadline;
+
+    private long writeDeadline;
+
+    private final ReadLock readLock = new ReadLock();
+    private final WriteLock writeLock = new WriteLock();
+
+    /**
+     * Create a redis read-write lock, when trying to acquire the redis lock fails, thread goes into self spin for a default sleep time at {@code 30ms}.
+     *
+     * @param redis           An {@link ReadWriteRedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis hash's key
+     * @param expireInSeconds Lease time of the read and write locks
+     */
+    public DistributedReadWriteLock(ReadWriteRedisClient redis, String key, int expireInSeconds) {
+        this(redis, key, expireInSeconds, BackoffStrategy.fixed(30));
+    }
+
+    /**
+     * Create a redis read-write lock waiting between attempts as {@code backoff} decides.
+     *
+     * @param redis           An {@link ReadWriteRedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis hash's key
+     * @param expireInSeconds Lease time of the read and write locks
+     * @param backoff         Decides how long to wait after a failed attempt
+     */
+    public DistributedReadWriteLock(ReadWriteRedisClient redis, String key, int expireInSeconds, BackoffStrategy backoff) {
+        this.redis = redis;
+        this.key = key;
+        this.expireInSeconds = expireInSeconds;
+        this.backoff = backoff;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public DistributedLock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public DistributedLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * 获取Redis中的读锁或写锁，{@code waitNanos}小于0时一直等待
+     *
+     * @return 租约截止时间，基于{@link System#nanoTime()}。等待超时返回null
+     */
+    private Long acquire(boolean write, long waitNanos) throws InterruptedException {
+        long first = System.nanoTime();
+        long start = first;
+        int attempts = 0;
+        long delay = 0;
+        long remaining;
+        while ((remaining = write
+                ? redis.tryAcquireWrite(key, token, expireInSeconds)
+                : redis.tryAcquireRead(key, token, expireInSeconds)) != 0) {
+            long remainingNanos = waitNanos - (System.nanoTime() - first);
+            if (waitNanos >= 0 && remainingNanos <= 0) {
+                return null;
+            }
+            attempts += 1;
+            delay = backoff.nextDelay(attempts, delay, remaining);
+            if (waitNanos >= 0) {
+                delay = Math.max(1, Math.min(delay, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+            }
+            redis.awaitRelease(key, delay);
+            start = System.nanoTime();
+        }
+        backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(start - first));
+        return start + TimeUnit.SECONDS.toNanos(expireInSeconds);
+    }
+
+    /**
+     * 在{@link #lock()}中等待，被中断时继续等待，获取成功后恢复中断状态
+     */
+    private Long acquireUninterruptibly(boolean write) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return acquire(write, -1);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean isHalfExpired(long deadline) {
+        return deadline - System.nanoTime() < TimeUnit.SECONDS.toNanos(expireInSeconds) / 2;
+    }
+
+    private static long deadline(long timeoutNanos) {
+        return System.nanoTime() + timeoutNanos;
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private class ReadLock implements DistributedLock {
+
+        @Override
+        public void lock() {
+            local.readLock().lock();
+            readLease.lock();
+            try {
+                join(readers == 0 ? acquireUninterruptibly(false) : null);
+            } catch (RuntimeException e) {
+                local.readLock().unlock();
+                throw e;
+            } finally {
+                readLease.unlock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            local.readLock().lockInterruptibly();
+            try {
+                readLease.lockInterruptibly();
+                try {
+                    join(readers == 0 ? acquire(false, -1) : null);
+                } finally {
+                    readLease.unlock();
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                local.readLock().unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!local.readLock().tryLock()) {
+                return false;
+            }
+            boolean acquired = false;
+            try {
+                if (readLease.tryLock()) {
+                    try {
+                        acquired = join(readers == 0 ? acquire(false, 0) : null);
+                    } finally {
+                        readLease.unlock();
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to acquire read lock [\"{}\"]", key, e);
+            }
+            if (!acquired) {
+                local.readLock().unlock();
+            }
+            return acquired;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = deadline(unit.toNanos(time));
+            if (!local.readLock().tryLock(time, unit)) {
+                return false;
+            }
+            boolean acquired = false;
+            try {
+                if (readLease.tryLock(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                    try {
+                        acquired = join(readers == 0 ? acquire(false, remaining(deadline)) : null);
+                    } finally {
+                        readLease.unlock();
+                    }
+                }
+            } finally {
+                if (!acquired) {
+                    local.readLock().unlock();
+                }
+            }
+            return acquired;
+        }
+
+        /**
+         * 在持有{@link #readLease}时增加本地读计数。{@code deadline}为新获取的Redis读锁的租约截止时间，
+         * 第一个读线程获取失败（等待超时）时为null
+         *
+         * @return false，表示未能获取Redis读锁
+         */
+        private boolean join(Long deadline) {
+            if (readers == 0) {
+                if (deadline == null) {
+                    return false;
+                }
+                readDeadline = deadline;
+            } else if (isHalfExpired(readDeadline)) {
+                long start = System.nanoTime();
+                if (redis.renewRead(key, token, expireInSeconds)) {
+                    readDeadline = start + TimeUnit.SECONDS.toNanos(expireInSeconds);
+                } else {
+                    log.warn("Read lock [\"{}\" - \"{}\"] has expired while shared by {} threads", key, token, readers);
+                }
+            }
+            readers += 1;
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if (local.getReadHoldCount() == 0) {
+                throw new IllegalMonitorStateException("Current thread is not holding lock");
+            }
+            boolean released = true;
+            readLease.lock();
+            try {
+                readers -= 1;
+                if (readers == 0) {
+                    released = redis.releaseRead(key, token);
+                }
+            } finally {
+                readLease.unlock();
+                local.readLock().unlock();
+            }
+            if (!released) {
+                throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class WriteLock implements DistributedLock {
+
+        @Override
+        public void lock() {
+            local.writeLock().lock();
+            try {
+                if (!reenter()) {
+                    writeDeadline = acquireUninterruptibly(true);
+                }
+            } catch (RuntimeException e) {
+                local.writeLock().unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            local.writeLock().lockInterruptibly();
+            try {
+                if (!reenter()) {
+                    writeDeadline = acquire(true, -1);
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                local.writeLock().unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!local.writeLock().tryLock()) {
+                return false;
+            }
+            try {
+                if (reenter()) {
+                    return true;
+                }
+                Long deadline = acquire(true, 0);
+                if (deadline != null) {
+                    writeDeadline = deadline;
+                    return true;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to acquire write lock [\"{}\"]", key, e);
+            }
+            local.writeLock().unlock();
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = deadline(unit.toNanos(time));
+            if (!local.writeLock().tryLock(time, unit)) {
+                return false;
+            }
+            boolean acquired = false;
+            try {
+                if (reenter()) {
+                    acquired = true;
+                } else {
+                    Long leaseDeadline = acquire(true, remaining(deadline));
+                    if (leaseDeadline != null) {
+                        writeDeadline = leaseDeadline;
+                        acquired = true;
+                    }
+                }
+            } finally {
+                if (!acquired) {
+                    local.writeLock().unlock();
+                }
+            }
+            return acquired;
+        }
+
+        /**
+         * 重入时不再获取Redis写锁，剩余租约不足一半时重置租约
+         *
+         * @return false，表示不是重入，需要获取Redis写锁
+         */
+        private boolean reenter() {
+            if (local.getWriteHoldCount() == 1) {
+                return false;
+            }
+            if (isHalfExpired(writeDeadline)) {
+                long start = System.nanoTime();
+                if (redis.renewWrite(key, token, expireInSeconds)) {
+                    writeDeadline = start + TimeUnit.SECONDS.toNanos(expireInSeconds);
+                } else {
+                    log.warn("Write lock [\"{}\" - \"{}\"] has expired", key, token);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if (!local.isWriteLockedByCurrentThread()) {
+                throw new IllegalMonitorStateException("Current thread is not holding lock");
+            }
+            boolean released = true;
+            try {
+                if (local.getWriteHoldCount() == 1) {
+                    released = redis.releaseWrite(key, token);
+                }
+            } finally {
+                local.writeLock().unlock();
+            }
+            if (!released) {
+                throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            return local.writeLock().newCondition();
+        }
+    }
+}
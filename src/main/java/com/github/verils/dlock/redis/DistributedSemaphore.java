@@ -0,0 +1,316 @@
+package com.github.verils.dlock.redis;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分布式计数信号量，用于在整个集群内限制并发数。许可保存在Redis的有序集合中，由{@link SemaphoreRedisClient}维护，每个许可都有租约，
+ * 持有者崩溃后许可会在租约到期时自动归还
+ * <p>
+ * 行为与{@link java.util.concurrent.Semaphore}一致：许可不属于某个线程，可以由其他线程释放。不同的是只能释放本实例持有的许可，
+ * 并且许可在租约到期后失效，租约时间需要覆盖许可的使用时间
+ * <p>
+ * 每个实例可以在本地预留最多{@code prefetch}个许可：从Redis获取许可时多取一些，释放时先放回本地，之后的获取直接使用本地的许可，
+ * 减少Redis调用。本地许可的剩余租约不足一半时归还给Redis；有本地线程在等待时，释放的许可也直接归还给Redis，以便通过释放通知唤醒等待者
+ */
+@Slf4j
+public class DistributedSemaphore {
+
+    private final SemaphoreRedisClient redis;
+
+    private final String key;
+    private final int permits;
+    private final int expireInSeconds;
+    private final BackoffStrategy backoff;
+    private final int prefetch;
+
+    /**
+     * 已获取但未使用的许可，按获取的先后排列
+     */
+    private final Deque<Permit> free = new ArrayDeque<>();
+
+    /**
+     * 正在使用的许可，按获取的先后排列，释放时先归还最早获取的许可
+     */
+    private final Deque<Permit> used = new ArrayDeque<>();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * Create a semaphore without local prefetching, when trying to acquire permits fails, thread goes into self spin for a default sleep time at {@code 30ms}.
+     *
+     * @param redis           An {@link SemaphoreRedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis sorted set's key
+     * @param permits         Total number of permits shared by all processes
+     * @param expireInSeconds Lease time of every permit
+     */
+    public DistributedSemaphore(SemaphoreRedisClient redis, String key, int permits, int expireInSeconds) {
+        this(redis, key, permits, expireInSeconds, BackoffStrategy.fixed(30), 0);
+    }
+
+    /**
+     * Create a semaphore keeping up to {@code prefetch} unused permits locally.
+     *
+     * @param redis           An {@link SemaphoreRedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis sorted set's key
+     * @param permits         Total number of permits shared by all processes
+     * @param expireInSeconds Lease time of every permit
+     * @param backoff         Decides how long to wait after a failed attempt
+     * @param prefetch        Maximum number of unused permits kept by this instance, {@code 0} to disable prefetching.
+     *                        Permits kept locally are not available to other processes
+     */
+    public DistributedSemaphore(SemaphoreRedisClient redis, String key, int permits, int expireInSeconds, BackoffStrategy backoff,
+                                int prefetch) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("Prefetch must not be negative");
+        }
+        this.redis = redis;
+        this.key = key;
+        this.permits = permits;
+        this.expireInSeconds = expireInSeconds;
+        this.backoff = backoff;
+        this.prefetch = prefetch;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * 获取{@code permits}个许可，许可不足时一直等待，直到获取成功或者线程被中断
+     */
+    public void acquire(int permits) throws InterruptedException {
+        checkPermits(permits);
+        acquire(permits, -1);
+    }
+
+    public void acquireUninterruptibly() {
+        acquireUninterruptibly(1);
+    }
+
+    public void acquireUninterruptibly(int permits) {
+        checkPermits(permits);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    acquire(permits, -1);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试获取{@code permits}个许可，不等待
+     */
+    public boolean tryAcquire(int permits) {
+        checkPermits(permits);
+        return tryAcquireOnce(permits);
+    }
+
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(1, timeout, unit);
+    }
+
+    /**
+     * 尝试获取{@code permits}个许可，最多等待{@code timeout}
+     *
+     * @return false，表示等待超时
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        checkPermits(permits);
+        return acquire(permits, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    public void release() {
+        release(1);
+    }
+
+    /**
+     * 释放{@code permits}个本实例持有的许可，可以由获取许可以外的线程调用
+     *
+     * @throws IllegalArgumentException 本实例持有的许可少于{@code permits}个
+     */
+    public void release(int permits) {
+        if (permits < 0) {
+            throw new IllegalArgumentException("Permits must not be negative");
+        }
+        List<String> released = new ArrayList<>();
+        synchronized (this) {
+            if (used.size() < permits) {
+                throw new IllegalArgumentException("Cannot release " + permits + " permits while holding " + used.size());
+            }
+            for (int i = 0; i < permits; i++) {
+                Permit permit = used.pollFirst();
+                if (waiters.get() == 0 && free.size() < prefetch && !permit.isHalfExpired()) {
+                    free.addLast(permit);
+                } else {
+                    released.add(permit.name);
+                }
+            }
+        }
+        if (!released.isEmpty()) {
+            redis.releasePermits(key, released);
+        }
+    }
+
+    /**
+     * @return 本实例持有的许可数量，包括本地预留的许可
+     */
+    public synchronized int getHeldPermits() {
+        return used.size() + free.size();
+    }
+
+    /**
+     * 归还本地预留的所有许可
+     */
+    public void drainPermits() {
+        List<String> released = new ArrayList<>();
+        synchronized (this) {
+            for (Permit permit : free) {
+                released.add(permit.name);
+            }
+            free.clear();
+        }
+        if (!released.isEmpty()) {
+            redis.releasePermits(key, released);
+        }
+    }
+
+    /**
+     * 获取许可，{@code waitNanos}小于0时一直等待
+     */
+    private boolean acquire(int permits, long waitNanos) throws InterruptedException {
+        if (tryAcquireOnce(permits)) {
+            return true;
+        }
+        long first = System.nanoTime();
+        int attempts = 0;
+        long delay = 0;
+        waiters.incrementAndGet();
+        try {
+            do {
+                long remainingNanos = waitNanos - (System.nanoTime() - first);
+                if (waitNanos >= 0 && remainingNanos <= 0) {
+                    return false;
+                }
+                attempts += 1;
+                delay = backoff.nextDelay(attempts, delay, -1);
+                if (waitNanos >= 0) {
+                    delay = Math.max(1, Math.min(delay, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+                }
+                redis.awaitRelease(key, delay);
+            } while (!tryAcquireOnce(permits));
+        } finally {
+            waiters.decrementAndGet();
+        }
+        backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - first));
+        return true;
+    }
+
+    /**
+     * 先使用本地预留的许可，不足的部分向Redis获取，并顺带预取许可，使本地预留的许可不超过{@link #prefetch}个
+     */
+    private boolean tryAcquireOnce(int permits) {
+        List<String> stale = new ArrayList<>();
+        int missing;
+        synchronized (this) {
+            for (Iterator<Permit> iterator = free.iterator(); iterator.hasNext(); ) {
+                Permit permit = iterator.next();
+                if (permit.isHalfExpired()) {
+                    iterator.remove();
+                    stale.add(permit.name);
+                }
+            }
+            missing = permits - free.size();
+            if (missing <= 0) {
+                for (int i = 0; i < permits; i++) {
+                    used.addLast(free.pollFirst());
+                }
+            }
+        }
+        if (!stale.isEmpty()) {
+            redis.releasePermits(key, stale);
+        }
+        if (missing <= 0) {
+            return true;
+        }
+
+        long start = System.nanoTime();
+        List<String> names = redis.tryAcquirePermits(key, this.permits, LockToken.next(), missing, Math.max(missing, prefetch), expireInSeconds);
+        if (names.isEmpty()) {
+            return false;
+        }
+        long deadline = start + TimeUnit.SECONDS.toNanos(expireInSeconds);
+        List<String> surplus = new ArrayList<>();
+        synchronized (this) {
+            for (String name : names) {
+                free.addLast(new Permit(name, deadline));
+            }
+            if (free.size() >= permits) {
+                for (int i = 0; i < permits; i++) {
+                    used.addLast(free.pollFirst());
+                }
+                while (free.size() > prefetch) {
+                    surplus.add(free.pollLast().name);
+                }
+                missing = 0;
+            }
+        }
+        if (!surplus.isEmpty()) {
+            redis.releasePermits(key, surplus);
+        }
+        if (missing > 0) {
+            // 其他线程在此期间取走了本地预留的许可，新获取的许可留在本地，下次再试
+            log.debug("Local permits of [\"{}\"] were taken while acquiring from redis", key);
+            return tryAcquireOnce(permits);
+        }
+        return true;
+    }
+
+    private void checkPermits(int permits) {
+        if (permits < 0 || permits > this.permits) {
+            throw new IllegalArgumentException("Permits must be between 0 and " + this.permits);
+        }
+    }
+
+    private class Permit {
+
+        private final String name;
+        private final long deadline;
+
+        private Permit(String name, long deadline) {
+            this.name = name;
+            this.deadline = deadline;
+        }
+
+        private boolean isHalfExpired() {
+            return deadline - System.nanoTime() < TimeUnit.SECONDS.toNanos(expireInSeconds) / 2;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.verils.dlock.redis;
+
+/**
+ * 支持公平锁的{@link RedisClient}。获取失败的持有者按顺序进入Redis中的等待队列，只有队首的持有者能在锁空闲时获取锁。
+ * 等待者每次尝试都会刷新自己的心跳，心跳超时的等待者会被移出队列，不会因为某个等待者崩溃而阻塞后面的等待者
+ * <p>
+ * 锁本身与{@link RedisClient#tryAcquire(String, String, int)}写入的键相同，可以由{@link LeaseWatchdog}续期。
+ * 等待队列保存在{@code key + ":queue"}与{@code key + ":timeout"}两个键中，在Redis集群中使用时，{@code key}需要包含哈希标签
+ */
+public interface FairRedisClient extends RedisClient {
+
+    /**
+     * 尝试获取公平锁。锁空闲并且队列为空或者队首为{@code value}时获取锁，并将{@code value}移出队列；否则将{@code value}加入队尾，
+     * 已在队列中时只刷新心跳
+     *
+     * @param key               插入Redis的键名称
+     * @param value             分布式锁的唯一标识
+     * @param expireInSeconds   键的过期时间
+     * @param heartbeatMillis   等待者的心跳超时时间，超过该时间没有再次尝试的等待者会被移出队列
+     * @return 0，表示成功获取锁。大于0表示建议的等待毫秒数
+     */
+    long tryAcquireFair(String key, String value, int expireInSeconds, long heartbeatMillis);
+
+    /**
+     * 释放公平锁，只通知队首的等待者
+     *
+     * @return true，表示锁已被释放。false表示键不存在，或者键已被其他持有者占用
+     */
+    boolean releaseFair(String key, String value);
+
+    /**
+     * 放弃等待，将{@code value}移出队列。如果{@code value}位于队首并且锁空闲，通知下一个等待者
+     */
+    void cancelFair(String key, String value);
+
+    /**
+     * 等待轮到{@code value}获取锁。默认实现等待{@code key + ":" + value}上的释放通知，{@link #releaseFair(String, String)}只在该键上通知队首的等待者
+     *
+     * @param key           公平锁的键名称
+     * @param value         等待者的锁标识
+     * @param timeoutMillis 最长等待时间
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    default void awaitTurn(String key, String value, long timeoutMillis) throws InterruptedException {
+        awaitRelease(key + ":" + value, timeoutMillis);
+    }
+
+    /**
+     * 订阅轮到{@code value}获取锁时的通知，在重新尝试获取之前订阅，尝试与等待之间发布的通知不会丢失。默认实现订阅{@code key + ":" + value}上的释放通知
+     *
+     * @param key   公平锁的键名称
+     * @param value 等待者的锁标识
+     * @return 新的订阅，由调用者负责关闭。不支持释放通知时为null，调用者应当退回到{@link #awaitTurn(String, String, long)}
+     * @throws InterruptedException 等待订阅生效的过程中线程被中断
+     */
+    default ReleaseSubscription subscribeTurn(String key, String value) throws InterruptedException {
+        return subscribeRelease(key + ":" + value);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本进程持有中的一个锁在某一时刻的状态，由{@link LockRegistry#getHeldLocks()}返回
+ */
+public class HeldLock {
+
+    private final String key;
+    private final String token;
+    private final String holder;
+    private final long holdNanos;
+    private final int queueLength;
+
+    HeldLock(String key, String token, String holder, long holdNanos, int queueLength) {
+        this.key = key;
+        this.token = token;
+        this.holder = holder;
+        this.holdNanos = holdNanos;
+        this.queueLength = queueLength;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return 写入Redis的锁标识，可以与{@link RedisClient#inspect(String)}的结果对照
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return 持有锁的线程名称，锁正在移交给本地排队的线程时为null
+     */
+    public String getHolder() {
+        return holder;
+    }
+
+    /**
+     * @return 当前持有者已持有的时间
+     */
+    public long getHoldTime(TimeUnit unit) {
+        return unit.convert(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 在该锁实例上排队等待的本地线程数量，是估计值
+     */
+    public int getQueueLength() {
+        return queueLength;
+    }
+
+    @Override
+    public String toString() {
+        return "HeldLock{key='" + key + "', token='" + token + "', holder='" + holder
+                + "', holdMillis=" + getHoldTime(TimeUnit.MILLISECONDS) + ", queueLength=" + queueLength + '}';
+    }
+}
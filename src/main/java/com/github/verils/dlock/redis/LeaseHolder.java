@@ -0,0 +1,27 @@
+package com.github.verils.dlock.redis;
+
+import java.time.Duration;
+
+/**
+ * 持有Redis锁租约的对象，由{@link LeaseWatchdog}在续期后回调
+ */
+interface LeaseHolder {
+
+    String getKey();
+
+    /**
+     * 续期成功
+     *
+     * @param value    续期的锁标识
+     * @param lease    续期后的租约，即{@link LeaseWatchdog}的租约，可能与获取锁时的租约不同
+     * @param deadline 新的租约截止时间，基于{@link System#nanoTime()}
+     */
+    void leaseRenewed(String value, Duration lease, long deadline);
+
+    /**
+     * 锁已过期，或者已被其他持有者占用
+     *
+     * @param value 续期失败的锁标识
+     */
+    void leaseLost(String value);
+}
@@ -0,0 +1,148 @@
+package com.github.verils.dlock.redis;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租约看门狗，定期为当前进程持有的所有分布式锁续期。每个{@link RedisClient}共享一个看门狗即可，每次续期通常只发起一次批量的Redis调用，与持有的锁数量无关
+ * <p>
+ * 续期时会校验锁标识，已过期或已被其他持有者占用的锁不会被续期，并会通知对应的锁实例
+ */
+@Slf4j
+public class LeaseWatchdog implements Closeable {
+
+    private final RedisClient redis;
+    private final Duration lease;
+
+    private final ConcurrentMap<LeaseHolder, String> locks = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Create a watchdog renewing held locks every third of {@code expireInSeconds}.
+     *
+     * @param redis           The {@link RedisClient} shared by the watched locks
+     * @param expireInSeconds Expire time set to the redis lock entries on each renewal
+     */
+    public LeaseWatchdog(RedisClient redis, int expireInSeconds) {
+        this(redis, expireInSeconds, TimeUnit.SECONDS.toMillis(expireInSeconds) / 3);
+    }
+
+    public LeaseWatchdog(RedisClient redis, int expireInSeconds, long periodMilliseconds) {
+        this(redis, Duration.ofSeconds(expireInSeconds), periodMilliseconds);
+    }
+
+    /**
+     * Create a watchdog renewing held locks every third of {@code lease}.
+     *
+     * @param redis The {@link RedisClient} shared by the watched locks
+     * @param lease Expire time set to the redis lock entries on each renewal, in milliseconds precision
+     */
+    public LeaseWatchdog(RedisClient redis, Duration lease) {
+        this(redis, lease, lease.toMillis() / 3);
+    }
+
+    public LeaseWatchdog(RedisClient redis, Duration lease, long periodMilliseconds) {
+        if (periodMilliseconds <= 0 || periodMilliseconds >= lease.toMillis()) {
+            throw new IllegalArgumentException("Renewal period must be positive and shorter than the expire time");
+        }
+        this.redis = redis;
+        this.lease = lease;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dlock-lease-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::renew, periodMilliseconds, periodMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    public RedisClient getRedis() {
+        return redis;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        locks.clear();
+    }
+
+    void watch(LeaseHolder holder, String value) {
+        locks.put(holder, value);
+    }
+
+    void unwatch(LeaseHolder holder) {
+        locks.remove(holder);
+    }
+
+    /**
+     * 续期所有被监视的锁，由调度线程周期性调用
+     * <p>
+     * 同一个键可能被多个实例监视，例如已失效的{@link RedisLockHandle}与当前的持有者，续期结果按键与锁标识判断。
+     * 同一个键的不同锁标识放在不同的批次中续期，通常只有一个批次
+     */
+    void renew() {
+        if (locks.isEmpty()) {
+            return;
+        }
+        Map<LeaseHolder, String> watched = new HashMap<>(locks);
+        List<Map<String, String>> batches = new ArrayList<>(1);
+        Map<LeaseHolder, Integer> batchOf = new HashMap<>(watched.size() * 2);
+        for (Map.Entry<LeaseHolder, String> entry : watched.entrySet()) {
+            String key = entry.getKey().getKey();
+            String value = entry.getValue();
+            int batch = 0;
+            while (batch < batches.size()) {
+                String batched = batches.get(batch).get(key);
+                if (batched == null || batched.equals(value)) {
+                    break;
+                }
+                batch++;
+            }
+            if (batch == batches.size()) {
+                batches.add(new HashMap<>(watched.size() * 2));
+            }
+            batches.get(batch).put(key, value);
+            batchOf.put(entry.getKey(), batch);
+        }
+
+        long start = System.nanoTime();
+        List<Set<String>> renewed = new ArrayList<>(batches.size());
+        for (Map<String, String> values : batches) {
+            try {
+                renewed.add(redis.renew(values, lease));
+            } catch (Exception e) {
+                log.warn("Failed to renew {} locks", values.size(), e);
+                renewed.add(null);
+            }
+        }
+
+        long deadline = start + lease.toNanos();
+        for (Map.Entry<LeaseHolder, String> entry : watched.entrySet()) {
+            LeaseHolder holder = entry.getKey();
+            String value = entry.getValue();
+            Set<String> keys = renewed.get(batchOf.get(holder));
+            if (keys == null) {
+                continue;
+            }
+            if (keys.contains(holder.getKey())) {
+                holder.leaseRenewed(value, lease, deadline);
+            } else {
+                log.warn("Lock [\"{}\" - \"{}\"] is no longer held, stop renewing", holder.getKey(), value);
+                locks.remove(holder, value);
+                holder.leaseLost(value);
+            }
+        }
+    }
+}
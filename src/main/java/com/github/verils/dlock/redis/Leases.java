@@ -0,0 +1,27 @@
+package com.github.verils.dlock.redis;
+
+import java.time.Duration;
+
+/**
+ * 租约时间的换算
+ */
+final class Leases {
+
+    private Leases() {
+    }
+
+    /**
+     * 换算为秒，不足一秒的部分向上取整，至少为1秒。只支持秒级过期时间的实现以此兼容毫秒级的租约
+     */
+    static int toSeconds(Duration lease) {
+        long millis = toMillis(lease);
+        return (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+    }
+
+    /**
+     * 换算为毫秒，至少为1毫秒
+     */
+    static long toMillis(Duration lease) {
+        return Math.max(1, lease.toMillis());
+    }
+}
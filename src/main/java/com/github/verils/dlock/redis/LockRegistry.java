@@ -0,0 +1,224 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.metrics.WaitTimeWindow;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 按键名称提供{@link RedisReentrantLock}的注册表。同一个键总是得到同一个锁实例，本进程内竞争同一个键的线程在该实例的AQS队列中排队，
+ * 只有排在最前面的线程会访问Redis
+ * <p>
+ * 空闲的锁实例以弱引用保存，不再被任何线程引用的锁会在垃圾回收后从注册表中移除，键的数量很多时也不会持续占用内存。
+ * 等待锁的线程总是引用着锁实例，持有中的锁由注册表保留强引用，因此移除的只是空闲的锁，不会破坏同一个键只有一个实例的约定
+ * <p>
+ * 键的数量没有上限、并且可以接受不同的键之间互斥时，可以使用{@link #striped(int, Function)}创建分段的注册表：
+ * 键按哈希值映射到固定数量的锁上，内存占用固定，但映射到同一个锁的键在整个集群内互斥
+ * <p>
+ * 注册表同时提供排查热点键的信息：{@link #getHeldLocks()}列出本进程持有中的锁，{@link #getHotKeys(int)}列出最近一段时间内等待时间最长的键，
+ * 再通过{@link RedisClient#inspect(String)}查询锁在Redis中的持有者
+ */
+public class LockRegistry {
+
+    private final Function<String, RedisReentrantLock> factory;
+
+    private final ConcurrentMap<String, LockReference> locks;
+    private final ReferenceQueue<RedisReentrantLock> collected;
+
+    /**
+     * 持有中的锁，保证加锁与解锁的线程即使没有保留锁实例，也能得到同一个实例
+     */
+    private final ConcurrentMap<String, RedisReentrantLock> pinned;
+
+    /**
+     * 分段模式下的锁，普通模式下为null
+     */
+    private final RedisReentrantLock[] stripes;
+
+    /**
+     * 最近一段时间内各个键的等待时间
+     */
+    private final WaitTimeWindow waitTimes = new WaitTimeWindow();
+
+    /**
+     * Create a registry handing out one {@link RedisReentrantLock} per key.
+     *
+     * @param redis           An {@link RedisClient} implementation providing the ability to access redis
+     * @param expireInSeconds Expire time set to the redis lock entries
+     */
+    public LockRegistry(RedisClient redis, int expireInSeconds) {
+        this(key -> new RedisReentrantLock(redis, key, expireInSeconds));
+    }
+
+    /**
+     * Create a registry handing out one lock per key.
+     *
+     * @param factory Creates the lock of a key, it is called at most once for every key the registry holds at a time
+     */
+    public LockRegistry(Function<String, RedisReentrantLock> factory) {
+        this.factory = factory;
+        this.locks = new ConcurrentHashMap<>();
+        this.collected = new ReferenceQueue<>();
+        this.pinned = new ConcurrentHashMap<>();
+        this.stripes = null;
+    }
+
+    private LockRegistry(RedisReentrantLock[] stripes) {
+        this.factory = null;
+        this.locks = null;
+        this.collected = null;
+        this.pinned = null;
+        this.stripes = stripes;
+        for (RedisReentrantLock lock : stripes) {
+            lock.registeredIn(this);
+        }
+    }
+
+    /**
+     * 创建分段的注册表。键按哈希值映射到{@code stripes}个锁中的一个，映射只取决于键名称，在所有进程中都相同
+     *
+     * @param stripes 锁的数量
+     * @param factory 根据分段的下标创建锁，锁的键名称需要包含下标，例如{@code "user:lock:" + index}
+     */
+    public static LockRegistry striped(int stripes, Function<Integer, RedisReentrantLock> factory) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive");
+        }
+        RedisReentrantLock[] locks = new RedisReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = factory.apply(i);
+        }
+        return new LockRegistry(locks);
+    }
+
+    /**
+     * @return 键对应的锁。普通模式下，只要返回的锁仍被引用，之后对同一个键的调用都会返回该实例
+     */
+    public RedisReentrantLock obtain(String key) {
+        if (stripes != null) {
+            return stripes[stripeOf(key)];
+        }
+        purge();
+        while (true) {
+            LockReference reference = locks.get(key);
+            RedisReentrantLock lock = reference != null ? reference.get() : null;
+            if (lock != null) {
+                return lock;
+            }
+            lock = factory.apply(key);
+            lock.registeredIn(this);
+            LockReference created = new LockReference(key, lock, collected);
+            if (reference == null ? locks.putIfAbsent(key, created) == null : locks.replace(key, reference, created)) {
+                return lock;
+            }
+        }
+    }
+
+    /**
+     * @return 注册表中的锁数量。普通模式下包括已不再被引用、但尚未被垃圾回收的锁
+     */
+    public int size() {
+        if (stripes != null) {
+            return stripes.length;
+        }
+        purge();
+        return locks.size();
+    }
+
+    /**
+     * @return 持有中的锁数量，分段模式下为持有中的分段数量
+     */
+    public int heldCount() {
+        if (stripes == null) {
+            return pinned.size();
+        }
+        int held = 0;
+        for (RedisReentrantLock lock : stripes) {
+            if (lock.isHeld()) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    /**
+     * @return 本进程持有中的锁，按持有时间从长到短排列
+     */
+    public List<HeldLock> getHeldLocks() {
+        Collection<RedisReentrantLock> candidates = stripes != null ? Arrays.asList(stripes) : pinned.values();
+        List<HeldLock> held = new ArrayList<>();
+        for (RedisReentrantLock lock : candidates) {
+            HeldLock state = lock.describe();
+            if (state != null) {
+                held.add(state);
+            }
+        }
+        held.sort(Comparator.comparingLong((HeldLock lock) -> lock.getHoldTime(TimeUnit.NANOSECONDS)).reversed());
+        return Collections.unmodifiableList(held);
+    }
+
+    /**
+     * 只统计发生了竞争的获取，即在本地排队或者在Redis中重试过的获取，没有竞争的键不占用内存
+     *
+     * @param k 最多返回的键数量
+     * @return 最近一分钟内本进程累计等待时间最长的{@code k}个键，分段模式下为各个分段的键
+     */
+    public List<WaitTimeWindow.HotKey> getHotKeys(int k) {
+        return waitTimes.top(k);
+    }
+
+    void pin(RedisReentrantLock lock) {
+        if (pinned != null) {
+            pinned.put(lock.getKey(), lock);
+        }
+    }
+
+    void unpin(RedisReentrantLock lock) {
+        if (pinned != null) {
+            pinned.remove(lock.getKey(), lock);
+        }
+    }
+
+    void waited(String key, long waitNanos) {
+        waitTimes.lockAcquired(key, waitNanos, 0);
+    }
+
+    private int stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return Math.floorMod(h, stripes.length);
+    }
+
+    /**
+     * 移除已被垃圾回收的锁
+     */
+    private void purge() {
+        Reference<? extends RedisReentrantLock> reference;
+        while ((reference = collected.poll()) != null) {
+            LockReference lockReference = (LockReference) reference;
+            locks.remove(lockReference.key, lockReference);
+        }
+    }
+
+    private static class LockReference extends WeakReference<RedisReentrantLock> {
+
+        private final String key;
+
+        private LockReference(String key, RedisReentrantLock lock, ReferenceQueue<RedisReentrantLock> queue) {
+            super(lock, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行阻塞的Redis调用所使用的线程。该实现使用空闲时回收的平台线程池；在Java 21及以上版本中，由多版本JAR中的实现替换为虚拟线程
+ */
+final class LockThreads {
+
+    private static final ExecutorService PARALLEL = newParallelExecutor();
+
+    private LockThreads() {
+    }
+
+    /**
+     * @return 异步获取锁时执行Redis调用所使用的线程池，与{@link #parallelExecutor()}相同，不占用{@link AsyncLockScheduler}的调度线程
+     */
+    static Executor blockingExecutor() {
+        return PARALLEL;
+    }
+
+    /**
+     * @return 同时向多个Redis节点发起调用所使用的线程池，空闲的线程会被回收
+     */
+    static Executor parallelExecutor() {
+        return PARALLEL;
+    }
+
+    private static ExecutorService newParallelExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dlock-parallel-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
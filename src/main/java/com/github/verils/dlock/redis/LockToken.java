@@ -0,0 +1,78 @@
+package com.github.verils.dlock.redis;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分布式锁的唯一标识。由进程启动时随机生成的前缀、线程ID以及进程内递增的计数器组成，固定为{@link #LENGTH}个ASCII字符。
+ * 前缀保证不同进程之间不重复，计数器保证进程内不重复，生成时不需要访问{@link SecureRandom}
+ */
+final class LockToken {
+
+    /**
+     * 前缀、线程ID、计数器各占16个十六进制字符
+     */
+    static final int LENGTH = 48;
+
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private static final long PREFIX = new SecureRandom().nextLong();
+
+    private static final String PREFIX_HEX = toHex(PREFIX);
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[LENGTH]);
+
+    private LockToken() {
+    }
+
+    /**
+     * 生成一个新的锁标识
+     */
+    static String next() {
+        byte[] buffer = BUFFER.get();
+        next(buffer, 0);
+        return toString(buffer, 0);
+    }
+
+    /**
+     * 生成一个新的锁标识，写入{@code buffer}中从{@code offset}开始的{@link #LENGTH}个字节，不分配任何对象
+     */
+    static void next(byte[] buffer, int offset) {
+        writeHex(buffer, offset, PREFIX);
+        writeHex(buffer, offset + 16, Thread.currentThread().getId());
+        writeHex(buffer, offset + 32, COUNTER.getAndIncrement());
+    }
+
+    /**
+     * 将{@code buffer}中从{@code offset}开始的锁标识转换为字符串
+     */
+    @SuppressWarnings("deprecation")
+    static String toString(byte[] buffer, int offset) {
+        return new String(buffer, 0, offset, LENGTH);
+    }
+
+    /**
+     * @return 锁标识是否由当前进程生成
+     */
+    static boolean isLocal(String token) {
+        return token.length() == LENGTH && token.startsWith(PREFIX_HEX);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String toHex(long value) {
+        byte[] buffer = new byte[16];
+        writeHex(buffer, 0, value);
+        return new String(buffer, 0, 0, buffer.length);
+    }
+
+    private static void writeHex(byte[] buffer, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            buffer[offset + i] = HEX[(int) (value & 0x0f)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.DistributedLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * 同时锁定多个键的分布式锁。所有的键通过一次Redis调用获取，要么全部获取成功，要么一个也不获取，不会因为多个锁的加锁顺序不同而死锁；
+ * 释放时同样只需一次调用
+ * <p>
+ * 键名称在创建时去重并排序，同一组键无论以何种顺序传入，行为都是一致的。本进程内的线程通过AQS排队，只有排在最前面的线程会访问Redis。
+ * 该锁可重入，每次重入都会批量续期所有的键；该锁不接受看门狗，租约时间需要覆盖整个临界区
+ */
+@Slf4j
+public class MultiLock implements DistributedLock {
+
+    private final Sync sync = new Sync();
+
+    private final RedisClient redis;
+
+    private final List<String> keys;
+    private final int expireInSeconds;
+    private final BackoffStrategy backoff;
+
+    private volatile String value;
+    private int state;
+
+    /**
+     * Create a lock over all of {@code keys}, when trying to acquire them fails, thread goes into self spin for a default sleep time at {@code 30ms}.
+     *
+     * @param redis           An {@link RedisClient} implementation providing the ability to access redis
+     * @param keys            To be used as the redis lock entries' keys
+     * @param expireInSeconds Expire time set to every redis lock entry
+     */
+    public MultiLock(RedisClient redis, Collection<String> keys, int expireInSeconds) {
+        this(redis, keys, expireInSeconds, BackoffStrategy.fixed(30));
+    }
+
+    /**
+     * Create a lock over all of {@code keys} waiting between attempts as {@code backoff} decides.
+     *
+     * @param redis           An {@link RedisClient} implementation providing the ability to access redis
+     * @param keys            To be used as the redis lock entries' keys, duplicates are ignored
+     * @param expireInSeconds Expire time set to every redis lock entry
+     * @param backoff         Decides how long to wait after a failed attempt. The remaining time to live passed to it is
+     *                        always unknown
+     */
+    public MultiLock(RedisClient redis, Collection<String> keys, int expireInSeconds, BackoffStrategy backoff) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one key is required");
+        }
+        this.redis = redis;
+        this.keys = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(keys)));
+        this.expireInSeconds = expireInSeconds;
+        this.backoff = backoff;
+    }
+
+    /**
+     * @return 排序后的键名称
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public void lock() {
+        sync.acquire(1);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    acquire(-1);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        sync.acquireInterruptibly(1);
+        try {
+            acquire(-1);
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (!sync.tryAcquire(1)) {
+            return false;
+        }
+        try {
+            if (acquire(0)) {
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to acquire locks {}", keys, e);
+        }
+        reset();
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        if (!sync.tryAcquireNanos(1, unit.toNanos(time))) {
+            return false;
+        }
+        try {
+            if (acquire(Math.max(0, deadline - System.nanoTime()))) {
+                return true;
+            }
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+        reset();
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        if (!sync.isHeldExclusively()) {
+            throw new IllegalMonitorStateException("Current thread is not holding lock");
+        }
+        if (value == null || state < 1) {
+            throw new IllegalMonitorStateException();
+        }
+        if (state > 1) {
+            state -= 1;
+            return;
+        }
+        String lock = value;
+        value = null;
+        state = 0;
+        try {
+            if (!redis.releaseAll(keys, lock)) {
+                throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+            }
+        } finally {
+            sync.release(1);
+        }
+    }
+
+    @Override
+    public Condition newCondition() {
+        return sync.newConditionObject();
+    }
+
+    /**
+     * 获取所有的键，{@code waitNanos}小于0时一直等待
+     *
+     * @return false，表示等待超时
+     */
+    private boolean acquire(long waitNanos) throws InterruptedException {
+        if (value != null) {
+            if (renew()) {
+                state += 1;
+                return true;
+            }
+            redis.releaseAll(keys, value);
+        }
+        String lock = LockToken.next();
+        long first = System.nanoTime();
+        int attempts = 0;
+        long delay = 0;
+        int blocked;
+        while ((blocked = redis.tryAcquireAll(keys, lock, expireInSeconds)) >= 0) {
+            long remainingNanos = waitNanos - (System.nanoTime() - first);
+            if (waitNanos >= 0 && remainingNanos <= 0) {
+                return false;
+            }
+            attempts += 1;
+            delay = backoff.nextDelay(attempts, delay, -1);
+            if (waitNanos >= 0) {
+                delay = Math.max(1, Math.min(delay, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+            }
+            redis.awaitRelease(keys.get(blocked), delay);
+        }
+        backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - first));
+        value = lock;
+        state += 1;
+        return true;
+    }
+
+    /**
+     * 重入时批量续期所有的键
+     *
+     * @return false，表示至少有一个键已过期或已被其他持有者占用
+     */
+    private boolean renew() {
+        Map<String, String> locks = new LinkedHashMap<>(keys.size() * 2);
+        for (String key : keys) {
+            locks.put(key, value);
+        }
+        return redis.renew(locks, expireInSeconds).size() == keys.size();
+    }
+
+    /**
+     * 获取失败后恢复状态。重入失败时仍保留之前的持有次数，但Redis中的键已无法保证
+     */
+    private void reset() {
+        if (state == 0) {
+            value = null;
+            sync.release(1);
+        }
+    }
+
+    private static class Sync extends AbstractQueuedSynchronizer {
+
+        @Override
+        public boolean tryAcquire(int acquires) {
+            if (compareAndSetState(0, 1)) {
+                setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return isHeldExclusively();
+        }
+
+        @Override
+        public boolean tryRelease(int acquires) {
+            if (!isHeldExclusively()) {
+                throw new IllegalMonitorStateException("Current thread is not holding lock");
+            }
+            if (getState() == 0) {
+                throw new IllegalMonitorStateException();
+            }
+            setExclusiveOwnerThread(null);
+            setState(0);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return Thread.currentThread() == getExclusiveOwnerThread();
+        }
+
+        Condition newConditionObject() {
+            return new ConditionObject();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.verils.dlock.redis;
+
+/**
+ * 支持分布式读写锁的{@link RedisClient}。读写锁保存在一个Redis哈希中，每个持有者占用一个字段，字段值为该持有者的租约截止时间。
+ * 任意数量的读锁可以共存，写锁与其他所有持有者互斥；同一个锁标识持有写锁时仍可获取读锁，用于写锁降级
+ * <p>
+ * 租约到期的字段在下一次获取时被清除，不会因为某个持有者崩溃而一直阻塞其他持有者。所有操作都必须在Redis中原子性地完成
+ */
+public interface ReadWriteRedisClient extends RedisClient {
+
+    /**
+     * 尝试获取读锁。没有其他持有者的写锁时写入读锁字段
+     *
+     * @param key             读写锁的键名称
+     * @param value           分布式锁的唯一标识
+     * @param expireInSeconds 读锁的租约时间
+     * @return 0，表示成功获取读锁。大于0表示写锁剩余的存活毫秒数；小于0表示剩余存活时间未知
+     */
+    long tryAcquireRead(String key, String value, int expireInSeconds);
+
+    /**
+     * 尝试获取写锁。没有其他持有者的读锁或写锁时写入写锁字段
+     *
+     * @param key             读写锁的键名称
+     * @param value           分布式锁的唯一标识
+     * @param expireInSeconds 写锁的租约时间
+     * @return 0，表示成功获取写锁。大于0表示其他持有者中最晚到期的剩余毫秒数；小于0表示剩余存活时间未知
+     */
+    long tryAcquireWrite(String key, String value, int expireInSeconds);
+
+    /**
+     * 重置读锁的租约，租约已到期时不做任何修改
+     *
+     * @return true，表示续期成功。false表示读锁已过期
+     */
+    boolean renewRead(String key, String value, int expireInSeconds);
+
+    /**
+     * 重置写锁的租约，租约已到期时不做任何修改
+     *
+     * @return true，表示续期成功。false表示写锁已过期
+     */
+    boolean renewWrite(String key, String value, int expireInSeconds);
+
+    /**
+     * 释放读锁
+     *
+     * @return true，表示读锁已被释放。false表示读锁已过期
+     */
+    boolean releaseRead(String key, String value);
+
+    /**
+     * 释放写锁
+     *
+     * @return true，表示写锁已被释放。false表示写锁已过期
+     */
+    boolean releaseWrite(String key, String value);
+}
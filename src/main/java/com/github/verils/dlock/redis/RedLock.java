@@ -0,0 +1,410 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.DistributedLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+import java.util.function.Predicate;
+
+/**
+ * 基于多个相互独立的Redis节点的分布式锁（Redlock）。在超过半数的节点上获取成功，并且剩余的有效时间大于0时，才算获取成功；
+ * 少数节点宕机或者响应缓慢不影响锁的获取与释放
+ * <p>
+ * 对所有节点的调用都是同时发出的，获取锁的耗时接近最慢的多数节点的一次往返，而不是所有节点的往返之和。
+ * 锁的有效时间从发出请求之前开始计算，并扣除时钟漂移：{@code 租约时间 - 获取耗时 - 租约时间 * 1% - 2ms}。
+ * 获取失败时在所有节点上释放，每个节点的释放都在该节点的获取调用返回之后执行，迟到的获取结果不会残留在节点上
+ * <p>
+ * 本进程内的线程通过AQS排队，只有排在最前面的线程会访问Redis。该锁可重入，每次重入都会在所有节点上续期，并重新计算有效时间；
+ * 该锁不接受看门狗，租约时间需要覆盖整个临界区
+ */
+@Slf4j
+public class RedLock implements DistributedLock {
+
+    /**
+     * 时钟漂移占租约时间的比例
+     */
+    private static final double CLOCK_DRIFT_FACTOR = 0.01;
+
+    /**
+     * 时钟漂移的固定部分，覆盖各节点过期精度的误差
+     */
+    private static final long CLOCK_DRIFT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final Sync sync = new Sync();
+
+    private final List<RedisClient> nodes;
+
+    private final String key;
+    private final int expireInSeconds;
+    private final BackoffStrategy backoff;
+    private final Executor executor;
+    private final int quorum;
+
+    private volatile String value;
+    private int state;
+
+    /**
+     * 每个节点上获取锁的调用，释放时在对应的调用返回之后执行
+     */
+    private List<CompletableFuture<Boolean>> acquisitions;
+
+    /**
+     * 锁有效的截止时间，基于{@link System#nanoTime()}
+     */
+    private volatile long validUntil;
+
+    /**
+     * Create a lock over independent redis nodes, when trying to acquire it fails, thread goes into self spin for a default sleep time at {@code 30ms}.
+     *
+     * @param nodes           {@link RedisClient}s of independent redis nodes, an odd number of at least 3 is recommended
+     * @param key             To be used as the redis lock entry's key on every node
+     * @param expireInSeconds Expire time set to the redis lock entries
+     */
+    public RedLock(List<? extends RedisClient> nodes, String key, int expireInSeconds) {
+        this(nodes, key, expireInSeconds, BackoffStrategy.fixed(30), LockThreads.parallelExecutor());
+    }
+
+    /**
+     * Create a lock over independent redis nodes calling them on {@code executor}.
+     *
+     * @param nodes           {@link RedisClient}s of independent redis nodes, an odd number of at least 3 is recommended
+     * @param key             To be used as the redis lock entry's key on every node
+     * @param expireInSeconds Expire time set to the redis lock entries
+     * @param backoff         Decides how long to wait after a failed attempt. The remaining time to live passed to it is
+     *                        always unknown
+     * @param executor        Runs the calls to the nodes, it must be able to run a call to every node at the same time
+     *                        for the calls to be parallel
+     */
+    public RedLock(List<? extends RedisClient> nodes, String key, int expireInSeconds, BackoffStrategy backoff, Executor executor) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.key = key;
+        this.expireInSeconds = expireInSeconds;
+        this.backoff = backoff;
+        this.executor = executor;
+        this.quorum = nodes.size() / 2 + 1;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return 锁剩余的有效时间，扣除了获取耗时与时钟漂移。当前线程未持有锁时为0
+     */
+    public long getValidity(TimeUnit unit) {
+        if (!sync.isHeldExclusively() || value == null) {
+            return 0;
+        }
+        return unit.convert(Math.max(0, validUntil - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void lock() {
+        sync.acquire(1);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    acquire(-1);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        sync.acquireInterruptibly(1);
+        try {
+            acquire(-1);
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (!sync.tryAcquire(1)) {
+            return false;
+        }
+        try {
+            if (acquire(0)) {
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to acquire lock [\"{}\"]", key, e);
+        }
+        reset();
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        if (!sync.tryAcquireNanos(1, unit.toNanos(time))) {
+            return false;
+        }
+        try {
+            if (acquire(Math.max(0, deadline - System.nanoTime()))) {
+                return true;
+            }
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+        reset();
+        return false;
+    }
+
+    /**
+     * 在所有节点上同时释放锁，等待所有节点返回
+     *
+     * @throws IllegalMonitorStateException 锁的有效时间已过，或者释放成功的节点不足半数
+     */
+    @Override
+    public void unlock() {
+        if (!sync.isHeldExclusively()) {
+            throw new IllegalMonitorStateException("Current thread is not holding lock");
+        }
+        if (value == null || state < 1) {
+            throw new IllegalMonitorStateException();
+        }
+        if (state > 1) {
+            state -= 1;
+            return;
+        }
+        String lock = value;
+        boolean valid = validUntil - System.nanoTime() > 0;
+        value = null;
+        state = 0;
+        try {
+            int released = 0;
+            for (CompletableFuture<Boolean> result : releaseAfter(acquisitions, lock)) {
+                if (result.join()) {
+                    released += 1;
+                }
+            }
+            if (!valid || released < quorum) {
+                throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+            }
+        } finally {
+            acquisitions = null;
+            sync.release(1);
+        }
+    }
+
+    @Override
+    public Condition newCondition() {
+        return sync.newConditionObject();
+    }
+
+    /**
+     * 获取锁，{@code waitNanos}小于0时一直等待
+     *
+     * @return false，表示等待超时
+     */
+    private boolean acquire(long waitNanos) throws InterruptedException {
+        if (value != null) {
+            if (renew()) {
+                state += 1;
+                return true;
+            }
+            releaseAfter(acquisitions, value);
+            value = null;
+            acquisitions = null;
+        }
+        long first = System.nanoTime();
+        int attempts = 0;
+        long delay = 0;
+        // 每次尝试使用新的锁标识，上一次尝试中迟到的释放不会删除本次获取的键
+        String lock;
+        while (!tryAcquireOnce(lock = LockToken.next())) {
+            long remainingNanos = waitNanos - (System.nanoTime() - first);
+            if (waitNanos >= 0 && remainingNanos <= 0) {
+                return false;
+            }
+            attempts += 1;
+            delay = backoff.nextDelay(attempts, delay, -1);
+            if (waitNanos >= 0) {
+                delay = Math.max(1, Math.min(delay, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+            }
+            nodes.get(0).awaitRelease(key, delay);
+        }
+        backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - first));
+        value = lock;
+        state += 1;
+        return true;
+    }
+
+    /**
+     * 在所有节点上同时尝试获取锁，失败时在所有节点上释放
+     */
+    private boolean tryAcquireOnce(String lock) throws InterruptedException {
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> results = callAll(node -> node.tryAcquire(key, lock, expireInSeconds));
+        boolean acquired = false;
+        try {
+            long validity = awaitQuorum(results, start);
+            if (validity > 0) {
+                acquisitions = results;
+                acquired = true;
+            }
+        } finally {
+            if (!acquired) {
+                releaseAfter(results, lock);
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * 重入时在所有节点上续期
+     *
+     * @return false，表示续期成功的节点不足半数，或者续期后已没有有效时间
+     */
+    private boolean renew() throws InterruptedException {
+        long start = System.nanoTime();
+        String lock = value;
+        List<CompletableFuture<Boolean>> results = callAll(node ->
+                !node.renew(Collections.singletonMap(key, lock), expireInSeconds).isEmpty());
+        return awaitQuorum(results, start) > 0;
+    }
+
+    /**
+     * 等待超过半数的节点成功，或者已不可能达到半数。成功时更新锁的有效截止时间
+     *
+     * @param start 发出调用之前的时间
+     * @return 锁剩余的有效纳秒数，小于等于0表示失败
+     */
+    private long awaitQuorum(List<CompletableFuture<Boolean>> results, long start) throws InterruptedException {
+        long leaseNanos = TimeUnit.SECONDS.toNanos(expireInSeconds);
+        long deadline = start + leaseNanos - (long) (leaseNanos * CLOCK_DRIFT_FACTOR) - CLOCK_DRIFT_NANOS;
+
+        CompletableFuture<Boolean> quorumReached = new CompletableFuture<>();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<Boolean> result : results) {
+            result.thenAccept(success -> {
+                if (success) {
+                    if (succeeded.incrementAndGet() == quorum) {
+                        quorumReached.complete(true);
+                    }
+                } else if (failed.incrementAndGet() == nodes.size() - quorum + 1) {
+                    quorumReached.complete(false);
+                }
+            });
+        }
+        try {
+            if (!quorumReached.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return 0;
+            }
+        } catch (TimeoutException | ExecutionException e) {
+            return 0;
+        }
+        long validity = deadline - System.nanoTime();
+        if (validity > 0) {
+            validUntil = deadline;
+        }
+        return validity;
+    }
+
+    /**
+     * 在所有节点上同时执行{@code operation}，出现异常的节点视为失败
+     */
+    private List<CompletableFuture<Boolean>> callAll(Predicate<RedisClient> operation) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(nodes.size());
+        for (RedisClient node : nodes) {
+            results.add(CompletableFuture.supplyAsync(() -> operation.test(node), executor)
+                    .exceptionally(e -> {
+                        log.warn("Failed to call a node of lock [\"{}\"]", key, e);
+                        return false;
+                    }));
+        }
+        return results;
+    }
+
+    /**
+     * 在每个节点上的获取调用返回之后释放该节点上的锁。无论获取是否成功都会释放，获取调用可能已经生效但响应丢失
+     *
+     * @return 每个节点上的释放结果
+     */
+    private List<CompletableFuture<Boolean>> releaseAfter(List<CompletableFuture<Boolean>> acquisitions, String lock) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            RedisClient node = nodes.get(i);
+            results.add(acquisitions.get(i)
+                    .thenApplyAsync(acquired -> node.release(key, lock), executor)
+                    .exceptionally(e -> {
+                        log.warn("Failed to release a node of lock [\"{}\"]", key, e);
+                        return false;
+                    }));
+        }
+        return results;
+    }
+
+    /**
+     * 获取失败后恢复状态。重入失败时仍保留之前的持有次数，但Redis中的键已无法保证
+     */
+    private void reset() {
+        if (state == 0) {
+            value = null;
+            sync.release(1);
+        }
+    }
+
+    private static class Sync extends AbstractQueuedSynchronizer {
+
+        @Override
+        public boolean tryAcquire(int acquires) {
+            if (compareAndSetState(0, 1)) {
+                setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return isHeldExclusively();
+        }
+
+        @Override
+        public boolean tryRelease(int acquires) {
+            if (!isHeldExclusively()) {
+                throw new IllegalMonitorStateException("Current thread is not holding lock");
+            }
+            if (getState() == 0) {
+                throw new IllegalMonitorStateException();
+            }
+            setExclusiveOwnerThread(null);
+            setState(0);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return Thread.currentThread() == getExclusiveOwnerThread();
+        }
+
+        Condition newConditionObject() {
+            return new ConditionObject();
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package com.github.verils.dlock.redis;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * 提供Redis访问接口，该对象可以是单例的
+ * <p>
+ * 以{@link Duration}表示租约的方法精确到毫秒，默认实现换算为秒后调用以秒为单位的方法，不足一秒的部分向上取整。
+ * 支持毫秒级过期时间的实现（例如使用{@code PX}与{@code PEXPIRE}）应当覆盖这些方法
  */
 public interface RedisClient {
 
@@ -15,6 +24,102 @@ public interface RedisClient {
      */
     boolean tryAcquire(String key, String value, int expireInSeconds);
 
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquire(String, String, int)}相同。获取失败时，在同一次Redis调用中返回当前持有者的锁剩余的存活时间
+     *
+     * @param key             插入Redis的键名称
+     * @param value           插入Redis的键值
+     * @param expireInSeconds 键的过期时间
+     * @return 0，表示成功获取锁。大于0表示锁剩余的存活毫秒数；小于0表示剩余存活时间未知
+     */
+    default long tryAcquireOrTtl(String key, String value, int expireInSeconds) {
+        return tryAcquire(key, value, expireInSeconds) ? 0 : -1;
+    }
+
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquire(String, String, int)}相同，租约精确到毫秒
+     *
+     * @param key   插入Redis的键名称
+     * @param value 插入Redis的键值
+     * @param lease 键的过期时间
+     * @return true，表示成功获取锁
+     */
+    default boolean tryAcquire(String key, String value, Duration lease) {
+        return tryAcquire(key, value, Leases.toSeconds(lease));
+    }
+
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquireOrTtl(String, String, int)}相同，租约精确到毫秒
+     *
+     * @param key   插入Redis的键名称
+     * @param value 插入Redis的键值
+     * @param lease 键的过期时间
+     * @return 0，表示成功获取锁。大于0表示锁剩余的存活毫秒数；小于0表示剩余存活时间未知
+     */
+    default long tryAcquireOrTtl(String key, String value, Duration lease) {
+        return tryAcquireOrTtl(key, value, Leases.toSeconds(lease));
+    }
+
+    /**
+     * 尝试获取分布式锁，行为与{@link #tryAcquireOrTtl(String, String, Duration)}相同，本次调用最多耗时{@code timeout}。
+     * 有等待期限的锁把剩余的等待时间传给每次调用，Redis变慢时获取锁的耗时不会超出期限
+     * <p>
+     * 超时的调用可能已经在Redis中生效，调用者会用同一个锁标识重试，实现应当把同一个锁标识的重复获取视为成功。默认实现忽略{@code timeout}
+     *
+     * @param key     插入Redis的键名称
+     * @param value   插入Redis的键值
+     * @param lease   键的过期时间
+     * @param timeout 本次调用的最长耗时，超时抛出运行时异常
+     * @return 0，表示成功获取锁。大于0表示锁剩余的存活毫秒数；小于0表示剩余存活时间未知
+     */
+    default long tryAcquireOrTtl(String key, String value, Duration lease, Duration timeout) {
+        return tryAcquireOrTtl(key, value, lease);
+    }
+
+    /**
+     * 尝试同时获取多个分布式锁，所有的键使用同一个锁标识。只有当所有的键都不存在时才全部写入，否则一个也不写入
+     * <p>
+     * 默认实现逐个获取，失败时释放已获取的键，需要{@code keys.size()}次以上的Redis调用，并且其他持有者可能短暂地看到部分键被占用。
+     * 支持脚本的实现应当在一次Redis调用中原子性地完成
+     *
+     * @param keys            插入Redis的键名称，按此顺序检查
+     * @param value           插入Redis的键值
+     * @param expireInSeconds 键的过期时间
+     * @return -1，表示成功获取所有的锁。否则为第一个已被占用的键在{@code keys}中的下标
+     */
+    default int tryAcquireAll(List<String> keys, String value, int expireInSeconds) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (!tryAcquire(keys.get(i), value, expireInSeconds)) {
+                for (int j = 0; j < i; j++) {
+                    release(keys.get(j), value);
+                }
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从候选的键中认领最多{@code limit}个未被占用的键，所有认领到的键使用同一个锁标识。已被占用的键会被跳过
+     * <p>
+     * 默认实现逐个调用{@link #tryAcquire(String, String, int)}。支持脚本的实现应当在一次Redis调用中完成
+     *
+     * @param keys            候选的键名称，按此顺序尝试
+     * @param value           插入Redis的键值
+     * @param limit           最多认领的键数量
+     * @param expireInSeconds 键的过期时间
+     * @return 认领成功的键名称，按尝试的顺序排列
+     */
+    default List<String> claim(List<String> keys, String value, int limit, int expireInSeconds) {
+        List<String> claimed = new ArrayList<>(Math.min(limit, keys.size()));
+        for (int i = 0; i < keys.size() && claimed.size() < limit; i++) {
+            if (tryAcquire(keys.get(i), value, expireInSeconds)) {
+                claimed.add(keys.get(i));
+            }
+        }
+        return claimed;
+    }
+
     /**
      * 重置键的过期时间
      *
@@ -23,6 +128,16 @@ public interface RedisClient {
      */
     void expire(String key, int expireInSeconds);
 
+    /**
+     * 重置键的过期时间，精确到毫秒
+     *
+     * @param key   需要重置的键名称
+     * @param lease 键的过期时间
+     */
+    default void expire(String key, Duration lease) {
+        expire(key, Leases.toSeconds(lease));
+    }
+
     /**
      * 获取键对应的值
      *
@@ -31,10 +146,90 @@ public interface RedisClient {
      */
     String getLock(String key);
 
+    /**
+     * 查询锁的持有者与剩余的存活时间，用于排查热点键
+     * <p>
+     * 默认实现只查询持有者，存活时间未知。支持脚本的实现应当在一次Redis调用中同时取得两者
+     *
+     * @param key 查询的键名称
+     * @return 锁的当前状态，锁未被持有时为null
+     */
+    default RemoteLock inspect(String key) {
+        String token = getLock(key);
+        return token != null ? new RemoteLock(token, -1) : null;
+    }
+
     /**
      * 释放分布式锁。具体行为是：删除Redis中名为{@code key}的键
      *
      * @param key 删除的键名称
      */
     void release(String key);
+
+    /**
+     * 释放分布式锁。具体行为是：当Redis中名为{@code key}的键的值等于{@code value}时，删除该键。比较与删除必须在Redis中原子性地完成
+     *
+     * @param key   删除的键名称
+     * @param value 分布式锁的唯一标识
+     * @return true，表示锁已被释放。false表示键不存在，或者键已被其他持有者占用
+     */
+    boolean release(String key, String value);
+
+    /**
+     * 同时释放多个分布式锁。每个键的值等于{@code value}时才删除该键，默认实现逐个调用{@link #release(String, String)}
+     *
+     * @param keys  删除的键名称
+     * @param value 分布式锁的唯一标识
+     * @return true，表示所有的锁都已被释放。false表示至少有一个键不存在，或者已被其他持有者占用
+     */
+    default boolean releaseAll(List<String> keys, String value) {
+        boolean released = true;
+        for (String key : keys) {
+            released &= release(key, value);
+        }
+        return released;
+    }
+
+    /**
+     * 批量续期分布式锁。具体行为是：对{@code locks}中的每个键，当Redis中的值等于对应的锁标识时，重置其过期时间。整个批次必须在一次Redis调用中完成
+     *
+     * @param locks           需要续期的键名称与锁标识
+     * @param expireInSeconds 键的过期时间
+     * @return 续期成功的键名称。不在其中的键表示已过期，或者已被其他持有者占用
+     */
+    Set<String> renew(Map<String, String> locks, int expireInSeconds);
+
+    /**
+     * 批量续期分布式锁，行为与{@link #renew(Map, int)}相同，租约精确到毫秒
+     *
+     * @param locks 需要续期的键名称与锁标识
+     * @param lease 键的过期时间
+     * @return 续期成功的键名称
+     */
+    default Set<String> renew(Map<String, String> locks, Duration lease) {
+        return renew(locks, Leases.toSeconds(lease));
+    }
+
+    /**
+     * 等待名为{@code key}的锁被释放。默认实现只是休眠{@code timeoutMillis}；支持释放通知的实现可以在收到通知后提前返回
+     *
+     * @param key           等待的键名称
+     * @param timeoutMillis 最长等待时间，也是通知丢失时的兜底时间
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    default void awaitRelease(String key, long timeoutMillis) throws InterruptedException {
+        Thread.sleep(timeoutMillis);
+    }
+
+    /**
+     * 订阅名为{@code key}的锁的释放通知。与{@link #awaitRelease(String, long)}不同，订阅在尝试获取锁之前打开，
+     * 尝试与等待之间发布的通知不会丢失，每次释放只唤醒一个订阅。默认实现不支持释放通知，返回null
+     *
+     * @param key 等待的键名称
+     * @return 新的订阅，由调用者负责关闭。不支持释放通知时为null，调用者应当退回到{@link #awaitRelease(String, long)}
+     * @throws InterruptedException 等待订阅生效的过程中线程被中断
+     */
+    default ReleaseSubscription subscribeRelease(String key) throws InterruptedException {
+        return null;
+    }
 }
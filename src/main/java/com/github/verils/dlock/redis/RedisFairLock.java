@@ -0,0 +1,305 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.DistributedLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * 公平的分布式锁，所有进程中的等待者按照首次尝试获取的先后顺序获取锁。等待顺序保存在Redis的等待队列中，由{@link FairRedisClient}维护
+ * <p>
+ * 等待者每隔不超过心跳超时时间的三分之一就会重新尝试一次，同时刷新自己的心跳；崩溃的等待者在心跳超时后被移出队列，不会阻塞后面的等待者。
+ * 释放锁时只通知队首的等待者，避免所有等待者同时访问Redis。本进程内的线程通过AQS排队，只有排在最前面的线程会进入Redis的等待队列
+ * <p>
+ * 该锁可重入，每次重入都会续期；该锁不接受看门狗，租约时间需要覆盖整个临界区
+ */
+@Slf4j
+public class RedisFairLock implements DistributedLock {
+
+    private final Sync sync = new Sync();
+
+    private final FairRedisClient redis;
+
+    private final String key;
+    private final int expireInSeconds;
+    private final BackoffStrategy backoff;
+    private final long heartbeatMillis;
+
+    private volatile String value;
+    private int state;
+
+    /**
+     * Create a fair lock with a heartbeat timeout of {@code expireInSeconds} but no more than {@code 5s}. A waiter blocks
+     * until it is notified as the head of the queue, and tries again every third of the heartbeat timeout to keep its
+     * place.
+     *
+     * @param redis           An {@link FairRedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis lock entry's key
+     * @param expireInSeconds Expire time set to the redis lock entry
+     */
+    public RedisFairLock(FairRedisClient redis, String key, int expireInSeconds) {
+        this(redis, key, expireInSeconds, Math.min(TimeUnit.SECONDS.toMillis(expireInSeconds), 5000));
+    }
+
+    private RedisFairLock(FairRedisClient redis, String key, int expireInSeconds, long heartbeatMillis) {
+        this(redis, key, expireInSeconds, BackoffStrategy.fixed(heartbeatMillis / 3), heartbeatMillis);
+    }
+
+    /**
+     * Create a fair lock waiting between attempts as {@code backoff} decides.
+     *
+     * @param redis           An {@link FairRedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis lock entry's key
+     * @param expireInSeconds Expire time set to the redis lock entry
+     * @param backoff         Decides how long to wait after a failed attempt, never longer than a third of
+     *                        {@code heartbeatMillis}
+     * @param heartbeatMillis A waiter not trying again within this time is removed from the queue
+     */
+    public RedisFairLock(FairRedisClient redis, String key, int expireInSeconds, BackoffStrategy backoff, long heartbeatMillis) {
+        if (heartbeatMillis < 3) {
+            throw new IllegalArgumentException("Heartbeat must be at least 3 milliseconds");
+        }
+        this.redis = redis;
+        this.key = key;
+        this.expireInSeconds = expireInSeconds;
+        this.backoff = backoff;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 等待期间被中断时仍然保留在等待队列中的位置，获取到锁后恢复线程的中断状态
+     */
+    @Override
+    public void lock() {
+        sync.acquire(1);
+        try {
+            acquire(-1, false);
+        } catch (InterruptedException e) {
+            reset();
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        sync.acquireInterruptibly(1);
+        try {
+            acquire(-1, true);
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+    }
+
+    /**
+     * 只尝试一次，失败时立即退出等待队列。队列中有其他等待者时，即使锁空闲也会失败
+     */
+    @Override
+    public boolean tryLock() {
+        if (!sync.tryAcquire(1)) {
+            return false;
+        }
+        try {
+            if (acquire(0, true)) {
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to acquire lock [\"{}\"]", key, e);
+        }
+        reset();
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        if (!sync.tryAcquireNanos(1, unit.toNanos(time))) {
+            return false;
+        }
+        try {
+            if (acquire(Math.max(0, deadline - System.nanoTime()), true)) {
+                return true;
+            }
+        } catch (Exception e) {
+            reset();
+            throw e;
+        }
+        reset();
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        if (!sync.isHeldExclusively()) {
+            throw new IllegalMonitorStateException("Current thread is not holding lock");
+        }
+        if (value == null || state < 1) {
+            throw new IllegalMonitorStateException();
+        }
+        if (state > 1) {
+            state -= 1;
+            return;
+        }
+        String lock = value;
+        value = null;
+        state = 0;
+        try {
+            if (!redis.releaseFair(key, lock)) {
+                throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+            }
+        } finally {
+            sync.release(1);
+        }
+    }
+
+    @Override
+    public Condition newCondition() {
+        return sync.newConditionObject();
+    }
+
+    /**
+     * 排队获取锁，{@code waitNanos}小于0时一直等待。超时或者出现异常时退出等待队列
+     * <p>
+     * 第一次尝试失败后订阅轮到自己时的通知，订阅之前发布的通知收不到，因此订阅后立即再尝试一次
+     *
+     * @param interruptible 为false时忽略等待期间的中断，保留在队列中的位置，返回前恢复线程的中断状态
+     * @return false，表示等待超时
+     */
+    private boolean acquire(long waitNanos, boolean interruptible) throws InterruptedException {
+        if (value != null) {
+            if (!redis.renew(Collections.singletonMap(key, value), expireInSeconds).isEmpty()) {
+                state += 1;
+                return true;
+            }
+            redis.releaseFair(key, value);
+        }
+        String lock = LockToken.next();
+        long first = System.nanoTime();
+        int attempts = 0;
+        long delay = 0;
+        long ttl;
+        boolean acquired = false;
+        boolean interrupted = false;
+        ReleaseSubscription turn = null;
+        try {
+            while ((ttl = redis.tryAcquireFair(key, lock, expireInSeconds, heartbeatMillis)) > 0) {
+                long remainingNanos = waitNanos - (System.nanoTime() - first);
+                if (waitNanos >= 0 && remainingNanos <= 0) {
+                    return false;
+                }
+                attempts += 1;
+                if (attempts == 1) {
+                    try {
+                        turn = redis.subscribeTurn(key, lock);
+                    } catch (InterruptedException e) {
+                        if (interruptible) {
+                            throw e;
+                        }
+                        interrupted = true;
+                    }
+                    if (turn != null) {
+                        continue;
+                    }
+                }
+                delay = backoff.nextDelay(attempts, delay, ttl);
+                // 在心跳超时之前至少再尝试两次，一次调用的延迟不会导致被移出队列
+                delay = Math.max(1, Math.min(delay, heartbeatMillis / 3));
+                if (waitNanos >= 0) {
+                    delay = Math.max(1, Math.min(delay, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+                }
+                try {
+                    if (turn != null) {
+                        turn.await(delay);
+                    } else {
+                        redis.awaitTurn(key, lock, delay);
+                    }
+                } catch (InterruptedException e) {
+                    if (interruptible) {
+                        throw e;
+                    }
+                    interrupted = true;
+                }
+            }
+            acquired = true;
+        } finally {
+            if (turn != null) {
+                turn.close();
+            }
+            if (!acquired) {
+                cancel(lock);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - first));
+        value = lock;
+        state += 1;
+        return true;
+    }
+
+    /**
+     * 退出等待队列。失败时只记录日志，等待者会在心跳超时后被移出队列
+     */
+    private void cancel(String lock) {
+        try {
+            redis.cancelFair(key, lock);
+        } catch (Exception e) {
+            log.warn("Failed to leave the queue of lock [\"{}\"]", key, e);
+        }
+    }
+
+    /**
+     * 获取失败后恢复状态。重入失败时仍保留之前的持有次数，但Redis中的键已无法保证
+     */
+    private void reset() {
+        if (state == 0) {
+            value = null;
+            sync.release(1);
+        }
+    }
+
+    private static class Sync extends AbstractQueuedSynchronizer {
+
+        @Override
+        public boolean tryAcquire(int acquires) {
+            if (compareAndSetState(0, 1)) {
+                setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return isHeldExclusively();
+        }
+
+        @Override
+        public boolean tryRelease(int acquires) {
+            if (!isHeldExclusively()) {
+                throw new IllegalMonitorStateException("Current thread is not holding lock");
+            }
+            if (getState() == 0) {
+                throw new IllegalMonitorStateException();
+            }
+            setExclusiveOwnerThread(null);
+            setState(0);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return Thread.currentThread() == getExclusiveOwnerThread();
+        }
+
+        Condition newConditionObject() {
+            return new ConditionObject();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.LockHandle;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步获取到的Redis锁，由锁标识而不是线程表示所有权
+ */
+class RedisLockHandle implements LockHandle, LeaseHolder {
+
+    private final RedisClient redis;
+    private final String key;
+    private final String value;
+    private final LeaseWatchdog watchdog;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    RedisLockHandle(RedisClient redis, String key, String value, LeaseWatchdog watchdog) {
+        this.redis = redis;
+        this.key = key;
+        this.value = value;
+        this.watchdog = watchdog;
+        if (watchdog != null) {
+            watchdog.watch(this, value);
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if (!released.compareAndSet(false, true)) {
+            throw new IllegalMonitorStateException("Lock has already been released");
+        }
+        if (watchdog != null) {
+            watchdog.unwatch(this);
+        }
+        if (!redis.release(key, value)) {
+            throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+        }
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public void leaseRenewed(String value, Duration lease, long deadline) {
+    }
+
+    @Override
+    public void leaseLost(String value) {
+    }
+}
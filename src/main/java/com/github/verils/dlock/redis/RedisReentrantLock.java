@@ -1,27 +1,119 @@
 package com.github.verils.dlock.redis;
 
-import com.github.verils.dlock.DistributedLock;
+import com.github.verils.dlock.AsyncDistributedLock;
+import com.github.verils.dlock.LockEvents;
+import com.github.verils.dlock.LockHandle;
+import com.github.verils.dlock.metrics.LockMetrics;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 import java.util.concurrent.locks.Condition;
 
 @Slf4j
-public class RedisReentrantLock implements DistributedLock {
+public class RedisReentrantLock implements AsyncDistributedLock {
 
     private final Sync sync = new Sync();
 
+    private final LeaseHolder leaseHolder = new LeaseHolder() {
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 看门狗续期成功后回调，延长本地记录的租约
+         */
+        @Override
+        public void leaseRenewed(String lock, Duration renewed, long deadline) {
+            if (lock.equals(value)) {
+                leaseDeadline = deadline;
+                LockEvents.leaseRenewed(RedisReentrantLock.class, key, renewed.toMillis());
+            }
+        }
+
+        /**
+         * 看门狗发现锁已不再被持有时回调，使本地租约失效，之后的检查将以Redis中的值为准
+         */
+        @Override
+        public void leaseLost(String lock) {
+            if (lock.equals(value)) {
+                leaseDeadline = System.nanoTime();
+                LockEvents.leaseLost(RedisReentrantLock.class, key, "watchdog");
+            }
+        }
+    };
+
     private final RedisClient redis;
+    private final LeaseWatchdog watchdog;
+
+    /**
+     * {@code redis}支持会话时不为null。持有锁期间的命令都通过会话在同一个连接上执行，释放锁后归还连接
+     */
+    private final RedisSession session;
+
+    /**
+     * {@code redis}支持二进制命令或者会话时不为null，此时使用预先编码的键名称，锁标识直接写入{@link #token}
+     */
+    private final BinaryRedisClient binary;
+    private final byte[] encodedKey;
+
+    /**
+     * 二进制命令使用的锁标识缓冲区，只由持有线程同步器的线程写入，获取成功后保存着当前持有的锁标识
+     */
+    private final byte[] token;
 
     private final String key;
-    private final int expireInSeconds;
-    private final int sleepMilliseconds;
+    private final Duration lease;
+    private final BackoffStrategy backoff;
+    private final int localHandoffLimit;
+    private final LockMetrics metrics;
 
-    private String value;
+    /**
+     * 为null时不熔断
+     */
+    private final CircuitBreaker breaker;
+    private final CircuitBreaker.Fallback fallback;
+
+    private volatile String value;
     private int state;
 
+    /**
+     * 当前持有的锁是熔断期间按照{@link CircuitBreaker.Fallback#LOCAL_ONLY}获取的，没有写入Redis。只由持有线程同步器的线程读写
+     */
+    private boolean local;
+
+    /**
+     * 本地记录的租约截止时间，基于{@link System#nanoTime()}。在截止时间之前，可以认为Redis中的锁仍由当前实例持有，无需再查询Redis
+     */
+    private volatile long leaseDeadline;
+
+    /**
+     * 当前线程获取到锁的时间，基于{@link System#nanoTime()}，用于统计持有时间
+     */
+    private volatile long acquiredAt;
+
+    /**
+     * 连续在本地线程之间移交锁的次数
+     */
+    private int handoffs;
+
+    /**
+     * 当前线程是否在本地排队等待过线程同步器，只由持有线程同步器的线程读写。与Redis中的重试一起判断本次获取是否发生了竞争
+     */
+    private boolean queued;
+
+    /**
+     * 由{@link LockRegistry}创建时不为null，持有锁期间注册表会保留该实例的强引用
+     */
+    private LockRegistry registry;
+
     /**
      * Create a redis lock instance, when trying to acquire redis lock returns {@code false}, thread goes into self spin for a default sleep time at {@code 30ms}.
      *
@@ -33,57 +125,274 @@ public class RedisReentrantLock implements DistributedLock {
         this(redis, key, expireInSeconds, 30);
     }
 
+    /**
+     * Create a redis lock instance with a millisecond-precision lease, when trying to acquire redis lock returns
+     * {@code false}, thread goes into self spin for a default sleep time at {@code 30ms}.
+     *
+     * @param redis An {@link RedisClient} implementation providing the ability to access redis
+     * @param key   To be used as the redis lock entry's key
+     * @param lease Expire time set to the redis lock entry, rounded up to whole seconds if {@code redis} only supports
+     *              seconds
+     */
+    public RedisReentrantLock(RedisClient redis, String key, Duration lease) {
+        this(redis, key, lease, BackoffStrategy.fixed(30), null, 0);
+    }
+
     public RedisReentrantLock(RedisClient redis, String key, int expireInSeconds, int sleepMilliseconds) {
+        this(redis, key, expireInSeconds, sleepMilliseconds, null);
+    }
+
+    public RedisReentrantLock(RedisClient redis, String key, int expireInSeconds, BackoffStrategy backoff) {
+        this(redis, key, expireInSeconds, backoff, null);
+    }
+
+    /**
+     * Create a redis lock instance whose lease is kept alive by {@code watchdog} for as long as it is held.
+     *
+     * @param redis             An {@link RedisClient} implementation providing the ability to access redis
+     * @param key               To be used as the redis lock entry's key
+     * @param expireInSeconds   Expire time set to the redis lock entry when it is acquired
+     * @param sleepMilliseconds Sleep time between two attempts to acquire the redis lock
+     * @param watchdog          A {@link LeaseWatchdog} created on the same {@code redis}, or {@code null} to disable renewal
+     */
+    public RedisReentrantLock(RedisClient redis, String key, int expireInSeconds, int sleepMilliseconds, LeaseWatchdog watchdog) {
+        this(redis, key, expireInSeconds, BackoffStrategy.fixed(sleepMilliseconds), watchdog);
+    }
+
+    /**
+     * Create a redis lock instance waiting between attempts as {@code backoff} decides.
+     *
+     * @param redis           An {@link RedisClient} implementation providing the ability to access redis
+     * @param key             To be used as the redis lock entry's key
+     * @param expireInSeconds Expire time set to the redis lock entry when it is acquired
+     * @param backoff         Decides how long to wait after a failed attempt. If {@code redis} notifies waiters on
+     *                        release, waiters block on the notification for up to the holder's remaining lease instead,
+     *                        and only fall back to the delay while the remaining lease or the subscription is unknown
+     * @param watchdog        A {@link LeaseWatchdog} created on the same {@code redis}, or {@code null} to disable renewal
+     */
+    public RedisReentrantLock(RedisClient redis, String key, int expireInSeconds, BackoffStrategy backoff, LeaseWatchdog watchdog) {
+        this(redis, key, expireInSeconds, backoff, watchdog, 0);
+    }
+
+    /**
+     * Create a redis lock instance which, on unlock, may hand the redis lock entry over to a thread of this process
+     * waiting on the same instance, instead of deleting it and competing for it again. At most
+     * {@code localHandoffLimit} consecutive hand-overs are made before the entry is deleted, giving other processes a
+     * chance to acquire it.
+     *
+     * @param redis             An {@link RedisClient} implementation providing the ability to access redis
+     * @param key               To be used as the redis lock entry's key
+     * @param expireInSeconds   Expire time set to the redis lock entry when it is acquired
+     * @param backoff           Decides how long to wait after a failed attempt
+     * @param watchdog          A {@link LeaseWatchdog} created on the same {@code redis}, or {@code null} to disable renewal
+     * @param localHandoffLimit Maximum consecutive hand-overs between local threads, {@code 0} to disable hand-over
+     */
+    public RedisReentrantLock(RedisClient redis, String key, int expireInSeconds, BackoffStrategy backoff, LeaseWatchdog watchdog,
+                              int localHandoffLimit) {
+        this(redis, key, Duration.ofSeconds(expireInSeconds), backoff, watchdog, localHandoffLimit);
+    }
+
+    /**
+     * Create a redis lock instance with a millisecond-precision lease. Short leases let other processes take over
+     * quickly after a crash, keep them longer than the critical section or use a {@code watchdog}.
+     *
+     * @param redis             An {@link RedisClient} implementation providing the ability to access redis
+     * @param key               To be used as the redis lock entry's key
+     * @param lease             Expire time set to the redis lock entry when it is acquired
+     * @param backoff           Decides how long to wait after a failed attempt
+     * @param watchdog          A {@link LeaseWatchdog} created on the same {@code redis}, or {@code null} to disable renewal
+     * @param localHandoffLimit Maximum consecutive hand-overs between local threads, {@code 0} to disable hand-over
+     */
+    public RedisReentrantLock(RedisClient redis, String key, Duration lease, BackoffStrategy backoff, LeaseWatchdog watchdog,
+                              int localHandoffLimit) {
+        this(redis, key, lease, backoff, watchdog, localHandoffLimit, LockMetrics.NOOP);
+    }
+
+    /**
+     * Create a redis lock instance reporting wait time, retries, hold time and failed {@code tryLock}s to
+     * {@code metrics}.
+     *
+     * @param redis             An {@link RedisClient} implementation providing the ability to access redis
+     * @param key               To be used as the redis lock entry's key
+     * @param lease             Expire time set to the redis lock entry when it is acquired
+     * @param backoff           Decides how long to wait after a failed attempt
+     * @param watchdog          A {@link LeaseWatchdog} created on the same {@code redis}, or {@code null} to disable renewal
+     * @param localHandoffLimit Maximum consecutive hand-overs between local threads, {@code 0} to disable hand-over
+     * @param metrics           Receives the lock's events, called on the locking and unlocking threads
+     */
+    public RedisReentrantLock(RedisClient redis, String key, Duration lease, BackoffStrategy backoff, LeaseWatchdog watchdog,
+                              int localHandoffLimit, LockMetrics metrics) {
+        this(redis, key, lease, backoff, watchdog, localHandoffLimit, metrics, null, CircuitBreaker.Fallback.FAIL_FAST);
+    }
+
+    /**
+     * Create a redis lock instance whose attempts to acquire the redis lock entry are guarded by {@code breaker}. While
+     * the breaker is open, redis is not called and the lock either fails fast or falls back to a local-only lock as
+     * {@code fallback} decides.
+     *
+     * @param redis             An {@link RedisClient} implementation providing the ability to access redis
+     * @param key               To be used as the redis lock entry's key
+     * @param lease             Expire time set to the redis lock entry when it is acquired
+     * @param backoff           Decides how long to wait after a failed attempt
+     * @param watchdog          A {@link LeaseWatchdog} created on the same {@code redis}, or {@code null} to disable renewal
+     * @param localHandoffLimit Maximum consecutive hand-overs between local threads, {@code 0} to disable hand-over
+     * @param metrics           Receives the lock's events, called on the locking and unlocking threads
+     * @param breaker           A {@link CircuitBreaker} shared by the locks on the same {@code redis}, or {@code null}
+     * @param fallback          How to acquire the lock while {@code breaker} is open
+     */
+    public RedisReentrantLock(RedisClient redis, String key, Duration lease, BackoffStrategy backoff, LeaseWatchdog watchdog,
+                              int localHandoffLimit, LockMetrics metrics, CircuitBreaker breaker,
+                              CircuitBreaker.Fallback fallback) {
+        if (lease.isNegative() || lease.isZero()) {
+            throw new IllegalArgumentException("Lease must be positive");
+        }
         this.redis = redis;
         this.key = key;
-        this.expireInSeconds = expireInSeconds;
-        this.sleepMilliseconds = sleepMilliseconds;
+        this.lease = lease;
+        this.backoff = backoff;
+        this.watchdog = watchdog;
+        this.localHandoffLimit = localHandoffLimit;
+        this.metrics = metrics;
+        this.breaker = breaker;
+        this.fallback = fallback;
+        this.session = redis instanceof SessionRedisClient ? ((SessionRedisClient) redis).openSession() : null;
+        if (session != null || redis instanceof BinaryRedisClient) {
+            this.binary = session != null ? session : (BinaryRedisClient) redis;
+            this.encodedKey = key.getBytes(StandardCharsets.UTF_8);
+            this.token = new byte[LockToken.LENGTH];
+        } else {
+            this.binary = null;
+            this.encodedKey = null;
+            this.token = null;
+        }
+    }
+
+    public String getKey() {
+        return key;
     }
 
     @Override
     public void lock() {
-        sync.acquire(1);
+        long begin = System.nanoTime();
+        Object waiting = LockEvents.waiting();
+        boolean reentrant = sync.getOwner() == Thread.currentThread();
+        boolean queued = !sync.tryAcquire(1);
+        if (queued) {
+            sync.acquire(1);
+        }
+        this.queued = queued;
         try {
-            acquire();
+            acquire(begin, waiting);
         } catch (InterruptedException e) {
             reset();
             Thread.currentThread().interrupt();
         } catch (Exception e) {
-            reset();
+            if (!reentrant) {
+                reset();
+            }
             throw e;
         }
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        sync.acquireInterruptibly(1);
+        long begin = System.nanoTime();
+        Object waiting = LockEvents.waiting();
+        boolean reentrant = sync.getOwner() == Thread.currentThread();
+        boolean queued = !sync.tryAcquire(1);
+        if (queued) {
+            sync.acquireInterruptibly(1);
+        }
+        this.queued = queued;
         try {
-            acquire();
+            acquire(begin, waiting);
         } catch (Exception e) {
-            reset();
+            if (!reentrant) {
+                reset();
+            }
             throw e;
         }
     }
 
     @Override
     public boolean tryLock() {
-        return tryLock(expireInSeconds, TimeUnit.SECONDS);
+        return tryLock(lease);
     }
 
+    /**
+     * 只尝试一次，{@code time}作为本次获取的租约时间，精确到毫秒
+     */
     @Override
     public boolean tryLock(long time, TimeUnit unit) {
+        return tryLock(Duration.ofNanos(unit.toNanos(time)));
+    }
+
+    /**
+     * 在{@code waitTime}内尝试获取锁，获取成功后锁的租约为{@code leaseTime}。本地排队与Redis调用共用同一个等待期限，
+     * 每次Redis调用的期限是剩余的等待时间，Redis变慢或者调用出错时到期返回false，不会无限期地阻塞
+     * <p>
+     * 超时的调用可能已经在Redis中写入了锁，之后的重试使用同一个锁标识；放弃获取时写入的锁在租约到期后自动释放。
+     * 重入时续期失败返回false，已经持有的锁保持不变
+     *
+     * @param waitTime  最长的等待时间
+     * @param leaseTime 获取成功后锁的存活时间，精确到毫秒
+     * @param unit      时间单位
+     * @return 是否获取到锁
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        Duration lease = Duration.ofNanos(unit.toNanos(leaseTime));
+        if (lease.isNegative() || lease.isZero()) {
+            throw new IllegalArgumentException("Lease must be positive");
+        }
+        long begin = System.nanoTime();
+        long deadline = begin + unit.toNanos(waitTime);
+        boolean reentrant = sync.getOwner() == Thread.currentThread();
+        boolean queued = !sync.tryAcquire(1);
+        if (queued && !sync.tryAcquireNanos(1, unit.toNanos(waitTime))) {
+            metrics.tryLockFailed(key);
+            return false;
+        }
+        this.queued = queued;
+        boolean acquired;
+        try {
+            acquired = acquire(lease, begin, LockEvents.waiting(), true, deadline);
+        } catch (InterruptedException e) {
+            reset();
+            throw e;
+        } catch (Exception e) {
+            log.warn("Failed to acquire lock: {}", key, e);
+            acquired = false;
+        }
+        if (!acquired) {
+            if (!reentrant) {
+                sync.release(1);
+            }
+            metrics.tryLockFailed(key);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean tryLock(Duration lease) {
+        long begin = System.nanoTime();
+        boolean reentrant = sync.getOwner() == Thread.currentThread();
         boolean acquired = sync.tryAcquire(1);
         if (!acquired) {
+            metrics.tryLockFailed(key);
             return false;
         }
+        queued = false;
         try {
-            acquired = tryAcquire(time, unit);
+            acquired = tryAcquire(lease, begin, LockEvents.waiting());
         } catch (Exception e) {
-            sync.release(1);
-            return false;
+            acquired = false;
         }
         if (!acquired) {
-            sync.release(1);
+            if (!reentrant) {
+                sync.release(1);
+            }
+            metrics.tryLockFailed(key);
             return false;
         }
         return true;
@@ -110,70 +419,398 @@ public class RedisReentrantLock implements DistributedLock {
         return sync.newConditionObject();
     }
 
+    /**
+     * 异步获取锁。异步获取的锁与线程无关，不可重入，也不参与本进程内的线程排队，只通过Redis与其他持有者互斥
+     */
+    @Override
+    public CompletionStage<LockHandle> lockAsync() {
+        return acquireAsync(lease, -1, watchdog);
+    }
+
+    @Override
+    public CompletionStage<LockHandle> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit) {
+        return acquireAsync(Duration.ofNanos(unit.toNanos(leaseTime)), unit.toNanos(waitTime), null);
+    }
+
+    private void acquire(long begin, Object waiting) throws InterruptedException {
+        acquire(lease, begin, waiting, false, 0);
+    }
+
     /**
      * 该方法是线程安全的
+     *
+     * @param timed    为true时最多等待到{@code deadline}，每次Redis调用的期限是剩余的等待时间
+     * @param deadline 等待的截止时间，基于{@link System#nanoTime()}
+     * @return 是否获取到锁，不限时的获取成功才会返回
      */
-    private void acquire() throws InterruptedException {
+    private boolean acquire(Duration lease, long begin, Object waiting, boolean timed, long deadline) throws InterruptedException {
         boolean reentrant = isHeldExclusively();
         if (reentrant) {
+            if (state == 0) {
+                inherit(lease, begin, waiting);
+                return true;
+            }
+            // 先续期再计数，续期失败时已经持有的锁保持不变
+            if (!local) {
+                expire(lease);
+            }
             state += 1;
-            redis.expire(key, expireInSeconds);
-            return;
+            return true;
+        }
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            return fallBack(begin, waiting, timed);
         }
         String lock = newLock();
-        while (!redis.tryAcquire(key, lock, expireInSeconds)) {
-            Thread.sleep(sleepMilliseconds);
+        long first = System.nanoTime();
+        long start = first;
+        int attempts = 0;
+        long delay = 0;
+        long remaining;
+        ReleaseSubscription subscription = null;
+        try {
+            while ((remaining = attempt(lock, lease, timed, deadline, subscription != null)) != 0) {
+                attempts += 1;
+                if (attempts == 1) {
+                    LockEvents.contended(RedisReentrantLock.class, key);
+                    subscription = redis.subscribeRelease(key);
+                    if (subscription != null) {
+                        // 订阅之前发布的释放通知收不到，订阅后立即再尝试一次
+                        start = System.nanoTime();
+                        continue;
+                    }
+                }
+                delay = backoff.nextDelay(attempts, delay, remaining);
+                long timeout = subscription != null && remaining > 0 && subscription.isSubscribed() ? remaining : delay;
+                if (timed) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    timeout = Math.min(timeout, TimeUnit.NANOSECONDS.toMillis(left) + 1);
+                }
+                if (subscription != null) {
+                    subscription.await(timeout);
+                } else {
+                    redis.awaitRelease(key, timeout);
+                }
+                if (breaker != null && !breaker.tryAcquirePermission()) {
+                    return fallBack(begin, waiting, timed);
+                }
+                start = System.nanoTime();
+            }
+        } finally {
+            if (subscription != null) {
+                subscription.close();
+            }
         }
-        value = lock;
-        state += 1;
+        backoff.acquired(attempts, TimeUnit.NANOSECONDS.toMillis(start - first));
+        acquired(lockOf(lock), start + lease.toNanos());
+        holdStarted(begin, waiting, attempts);
+        return true;
     }
 
-    private boolean tryAcquire(long time, TimeUnit unit) {
-        String lock = newLock();
-        boolean acquired = redis.tryAcquire(key, lock, (int) unit.toSeconds(time));
-        if (acquired) {
-            value = lock;
+    /**
+     * 尝试一次获取Redis中的锁，并向{@link #breaker}报告本次调用的结果
+     *
+     * @param ttl 是否需要锁剩余的存活时间，订阅了释放通知时以此作为等待的兜底时间
+     */
+    private long attempt(String lock, Duration lease, boolean timed, long deadline, boolean ttl) {
+        long start = System.nanoTime();
+        try {
+            long remaining = timed
+                    ? tryAcquireOrTtl(lock, lease, Duration.ofNanos(Math.max(0, deadline - start)))
+                    : tryAcquireOrTtl(lock, lease, ttl || backoff.requiresRemainingTtl());
+            called(start, true);
+            if (remaining != 0) {
+                closeSession();
+            }
+            return remaining;
+        } catch (RuntimeException e) {
+            called(start, false);
+            closeSession();
+            throw e;
+        }
+    }
+
+    private long tryAcquireOrTtl(String lock, Duration lease, boolean ttl) {
+        if (binary != null) {
+            if (ttl) {
+                return binary.tryAcquireOrTtl(encodedKey, token, lease);
+            }
+            return binary.tryAcquire(encodedKey, token, lease) ? 0 : -1;
+        }
+        if (ttl) {
+            return redis.tryAcquireOrTtl(key, lock, lease);
+        }
+        return redis.tryAcquire(key, lock, lease) ? 0 : -1;
+    }
+
+    private long tryAcquireOrTtl(String lock, Duration lease, Duration timeout) {
+        if (binary != null) {
+            return binary.tryAcquireOrTtl(encodedKey, token, lease, timeout);
+        }
+        return redis.tryAcquireOrTtl(key, lock, lease, timeout);
+    }
+
+    /**
+     * 归还会话占用的连接。锁移交给本地排队的线程时也归还，排队的线程可能已经放弃等待
+     */
+    private void closeSession() {
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    private void called(long start, boolean succeeded) {
+        if (breaker == null) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        if (succeeded) {
+            breaker.onSuccess(duration);
+        } else {
+            breaker.onError(duration);
+        }
+    }
+
+    /**
+     * 熔断期间按照{@link #fallback}获取锁，不访问Redis。本地锁没有租约，释放时不会移交给排队的线程，以免熔断恢复后仍在使用本地锁
+     */
+    private boolean fallBack(long begin, Object waiting, boolean timed) {
+        if (fallback == CircuitBreaker.Fallback.LOCAL_ONLY) {
+            local = true;
+            value = LockToken.next();
             state += 1;
+            handoffs = 0;
+            leaseDeadline = System.nanoTime();
+            if (registry != null) {
+                registry.pin(this);
+            }
+            holdStarted(begin, waiting, 0);
             return true;
         }
+        if (timed) {
+            return false;
+        }
+        throw new CircuitBreakerOpenException(key);
+    }
+
+    private boolean tryAcquire(Duration lease, long begin, Object waiting) {
         if (isHeldExclusively()) {
+            if (state == 0) {
+                inherit(lease, begin, waiting);
+                return true;
+            }
+            // 先续期再计数，续期失败时已经持有的锁保持不变
+            if (!local) {
+                expire(lease);
+            }
             state += 1;
-            redis.expire(key, (int) unit.toSeconds(time));
             return true;
         }
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            return fallBack(begin, waiting, true);
+        }
+        String lock = newLock();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = binary != null
+                    ? binary.tryAcquire(encodedKey, token, lease)
+                    : redis.tryAcquire(key, lock, lease);
+            called(start, true);
+        } catch (RuntimeException e) {
+            called(start, false);
+            closeSession();
+            throw e;
+        }
+        if (acquired) {
+            acquired(lockOf(lock), start + lease.toNanos());
+            holdStarted(begin, waiting, 0);
+            return true;
+        }
+        closeSession();
         return false;
     }
 
+    private void acquired(String lock, long deadline) {
+        value = lock;
+        state += 1;
+        handoffs = 0;
+        leaseDeadline = deadline;
+        if (registry != null) {
+            registry.pin(this);
+        }
+        if (watchdog != null) {
+            watchdog.watch(leaseHolder, lock);
+        }
+    }
+
+    /**
+     * 接管上一个本地持有者移交的锁，剩余租约不足一半时才续期
+     */
+    private void inherit(Duration lease, long begin, Object waiting) {
+        state = 1;
+        if (local) {
+            holdStarted(begin, waiting, 0);
+            return;
+        }
+        if (watchdog != null) {
+            watchdog.watch(leaseHolder, value);
+        }
+        if (leaseDeadline - System.nanoTime() < lease.toNanos() / 2) {
+            expire(lease);
+        }
+        holdStarted(begin, waiting, 0);
+    }
+
+    private void holdStarted(long begin, Object waiting, int retries) {
+        acquiredAt = System.nanoTime();
+        metrics.lockAcquired(key, acquiredAt - begin, retries);
+        if (registry != null && (queued || retries > 0)) {
+            registry.waited(key, acquiredAt - begin);
+        }
+        LockEvents.acquired(waiting, RedisReentrantLock.class, key, retries);
+    }
+
+    private void expire(Duration lease) {
+        long start = System.nanoTime();
+        if (binary != null) {
+            binary.expire(encodedKey, lease);
+        } else {
+            redis.expire(key, lease);
+        }
+        leaseDeadline = start + lease.toNanos();
+    }
+
     private void reset() {
+        if (watchdog != null) {
+            watchdog.unwatch(leaseHolder);
+        }
+        if (value != null && registry != null) {
+            registry.unpin(this);
+        }
         value = null;
         state = 0;
+        local = false;
+        closeSession();
         sync.release(1);
     }
 
     private void release() {
-        if (value == null) {
+        if (value == null || state < 1) {
             throw new IllegalMonitorStateException();
         }
-        if (!value.equals(redis.getLock(key))) {
-            throw new IllegalMonitorStateException();
+        if (state > 1) {
+            if (!isHeldExclusively()) {
+                throw new IllegalMonitorStateException();
+            }
+            state -= 1;
+            return;
         }
-        state -= 1;
-        if (state < 0) {
-            throw new IllegalMonitorStateException();
+        String lock = value;
+        if (watchdog != null) {
+            watchdog.unwatch(leaseHolder);
         }
-        if (state > 0) {
+        metrics.lockReleased(key, System.nanoTime() - acquiredAt);
+        if (handOff()) {
+            closeSession();
+            this.state = 0;
             return;
         }
         this.value = null;
-        redis.release(key);
+        this.state = 0;
+        if (registry != null) {
+            registry.unpin(this);
+        }
+        if (local) {
+            local = false;
+            return;
+        }
+        boolean released;
+        try {
+            released = binary != null ? binary.release(encodedKey, token) : redis.release(key, lock);
+        } finally {
+            closeSession();
+        }
+        if (!released) {
+            LockEvents.leaseLost(RedisReentrantLock.class, key, "unlock");
+            throw new IllegalMonitorStateException("Lock has expired or been acquired by others");
+        }
     }
 
+    /**
+     * 判断是否将锁保留给本地排队的线程。移交后不再续期，如果排队的线程放弃了等待，锁会在租约到期后自动释放
+     */
+    private boolean handOff() {
+        if (localHandoffLimit <= 0 || handoffs >= localHandoffLimit
+                || !sync.hasQueuedThreads() || System.nanoTime() - leaseDeadline >= 0) {
+            handoffs = 0;
+            return false;
+        }
+        handoffs += 1;
+        return true;
+    }
+
+    /**
+     * 判断Redis中的锁是否仍由当前实例持有。本地租约有效时直接返回，租约过期后才向Redis查询
+     */
     private boolean isHeldExclusively() {
-        return value != null && value.equals(redis.getLock(key));
+        if (value == null) {
+            return false;
+        }
+        if (local || System.nanoTime() - leaseDeadline < 0) {
+            return true;
+        }
+        if (binary != null) {
+            return Arrays.equals(token, binary.getLock(encodedKey));
+        }
+        return value.equals(redis.getLock(key));
     }
 
+    private CompletableFuture<LockHandle> acquireAsync(Duration lease, long waitNanos, LeaseWatchdog watchdog) {
+        String lock = LockToken.next();
+        return new AsyncAcquisition(redis, key, lock, lease, backoff, waitNanos,
+                () -> new RedisLockHandle(redis, key, lock, watchdog)).start();
+    }
+
+    /**
+     * 生成新的锁标识。使用二进制命令时锁标识写入{@link #token}并返回null，获取成功后才由{@link #lockOf(String)}转换为字符串
+     */
     private String newLock() {
-        return UUID.randomUUID().toString();
+        if (binary != null) {
+            LockToken.next(token, 0);
+            return null;
+        }
+        return LockToken.next();
+    }
+
+    private String lockOf(String lock) {
+        return lock != null ? lock : LockToken.toString(token, 0);
+    }
+
+    void registeredIn(LockRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return 锁是否被本实例持有，包括移交给本地排队线程的过程中
+     */
+    boolean isHeld() {
+        return value != null;
+    }
+
+    /**
+     * @return 锁的当前状态，未被本实例持有时为null
+     */
+    HeldLock describe() {
+        String lock = value;
+        if (lock == null) {
+            return null;
+        }
+        Thread owner = sync.getOwner();
+        return new HeldLock(key, lock, owner != null ? owner.getName() : null, System.nanoTime() - acquiredAt,
+                sync.getQueueLength());
     }
 
     private static class Sync extends AbstractQueuedSynchronizer {
@@ -220,5 +857,9 @@ public class RedisReentrantLock implements DistributedLock {
         Condition newConditionObject() {
             return new ConditionObject();
         }
+
+        Thread getOwner() {
+            return getExclusiveOwnerThread();
+        }
     }
 }
@@ -0,0 +1,18 @@
+package com.github.verils.dlock.redis;
+
+import java.io.Closeable;
+
+/**
+ * 在同一个Redis连接上执行命令的会话，由{@link SessionRedisClient#openSession()}打开
+ * <p>
+ * 会话中的第一次调用占用一个连接，之后的调用都在该连接上执行，直到{@link #close()}归还连接。关闭后会话仍然可以使用，
+ * 下一次调用会重新占用一个连接。会话不是线程安全的，同一时刻只能由一个线程使用，例如持有锁的线程
+ */
+public interface RedisSession extends BinaryRedisClient, Closeable {
+
+    /**
+     * 归还会话占用的连接，没有占用连接时什么也不做
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,31 @@
+package com.github.verils.dlock.redis;
+
+import java.io.Closeable;
+
+/**
+ * 一个键上的锁释放通知的订阅，由{@link RedisClient#subscribeRelease(String)}打开
+ * <p>
+ * 订阅应当在尝试获取锁之前打开，并在整个等待过程中保持打开，两次等待之间到达的通知会保留到下一次等待，不会丢失。
+ * 每次释放只唤醒同一个键上的一个订阅，同一个键上的其他订阅继续等待下一次释放。订阅不是线程安全的，只能由等待锁的线程使用
+ */
+public interface ReleaseSubscription extends Closeable {
+
+    /**
+     * @return 订阅是否已在Redis中生效。未生效时可能收不到通知，等待时间应当退回到轮询的间隔
+     */
+    boolean isSubscribed();
+
+    /**
+     * 等待下一次释放通知，已经收到尚未处理的通知时立即返回
+     *
+     * @param timeoutMillis 最长等待时间，也是通知丢失时的兜底时间，通常为锁剩余的存活时间
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    void await(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * 取消订阅。收到但没有处理的通知转交给同一个键上的下一个订阅
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,47 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis中一个锁的当前状态，由{@link RedisClient#inspect(String)}查询得到，用于排查是哪个进程持有着锁
+ */
+public class RemoteLock {
+
+    private final String token;
+    private final long ttlMillis;
+
+    /**
+     * @param token     The value stored under the lock key
+     * @param ttlMillis Remaining time to live in milliseconds, negative if the key has no expire or it is unknown
+     */
+    public RemoteLock(String token, long ttlMillis) {
+        this.token = token;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return 持有者写入的锁标识
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return 锁剩余的存活时间，小于0表示没有过期时间或者未知
+     */
+    public long getTtl(TimeUnit unit) {
+        return ttlMillis < 0 ? ttlMillis : unit.convert(ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 锁是否由当前进程持有，只能识别本库生成的锁标识
+     */
+    public boolean isHeldByThisProcess() {
+        return LockToken.isLocal(token);
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteLock{token='" + token + "', ttlMillis=" + ttlMillis + '}';
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.verils.dlock.redis;
+
+import java.util.List;
+
+/**
+ * 支持分布式信号量的{@link RedisClient}。每个许可是Redis有序集合中的一个成员，分数为该许可的租约截止时间。
+ * 获取许可前先清除租约已到期的成员，不会因为某个持有者崩溃而永久占用许可。所有操作都必须在Redis中原子性地完成
+ */
+public interface SemaphoreRedisClient extends RedisClient {
+
+    /**
+     * 尝试获取许可。未到期的成员数量加上{@code min}不超过{@code permits}时，获取尽可能多但不超过{@code max}个许可，否则一个也不获取
+     *
+     * @param key             信号量的键名称
+     * @param permits         信号量的许可总数
+     * @param prefix          许可成员名称的前缀，每次调用必须唯一
+     * @param min             至少获取的许可数量
+     * @param max             最多获取的许可数量
+     * @param expireInSeconds 许可的租约时间
+     * @return 获取到的许可成员名称，获取失败时为空
+     */
+    List<String> tryAcquirePermits(String key, int permits, String prefix, int min, int max, int expireInSeconds);
+
+    /**
+     * 释放许可。如果支持释放通知，释放后通知在{@code key}上等待的线程
+     *
+     * @param key         信号量的键名称
+     * @param permitNames 需要释放的许可成员名称
+     * @return 实际释放的许可数量，已到期的许可不计算在内
+     */
+    int releasePermits(String key, List<String> permitNames);
+}
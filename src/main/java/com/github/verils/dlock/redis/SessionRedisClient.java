@@ -0,0 +1,14 @@
+package com.github.verils.dlock.redis;
+
+/**
+ * 支持会话的{@link RedisClient}。锁在持有期间通过会话访问Redis，获取、续期与释放都在同一个连接上执行，一次持有只需从连接池借用一次连接
+ */
+public interface SessionRedisClient extends RedisClient {
+
+    /**
+     * 打开一个会话。会话本身不占用连接，可以在锁的整个生命周期内反复使用
+     *
+     * @return 新的会话，由调用者负责关闭
+     */
+    RedisSession openSession();
+}
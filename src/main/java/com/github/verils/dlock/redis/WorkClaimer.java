@@ -0,0 +1,41 @@
+package com.github.verils.dlock.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * 批量认领任务。调度节点轮询到一批候选任务后，通过一次Redis调用认领其中未被其他节点占用的若干个，而不是为每个候选任务单独调用一次
+ * {@link RedisReentrantLock#tryLock()}
+ * <p>
+ * 认领到的任务以{@link Claim}表示，其中所有的键共享同一个锁标识，可以批量续期和释放。候选任务较多时，认领脚本会在Redis中执行较长时间，
+ * 需要根据实际情况控制每批的数量
+ */
+public class WorkClaimer {
+
+    private final RedisClient redis;
+    private final int expireInSeconds;
+
+    /**
+     * @param redis           An {@link RedisClient} implementation providing the ability to access redis
+     * @param expireInSeconds Expire time set to every claimed redis lock entry
+     */
+    public WorkClaimer(RedisClient redis, int expireInSeconds) {
+        this.redis = redis;
+        this.expireInSeconds = expireInSeconds;
+    }
+
+    /**
+     * 从{@code candidates}中认领最多{@code limit}个未被占用的键
+     *
+     * @param candidates 候选的键名称，按迭代顺序尝试
+     * @param limit      最多认领的键数量
+     * @return 认领结果，可能不包含任何键
+     */
+    public Claim claim(Collection<String> candidates, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        String token = LockToken.next();
+        return new Claim(redis, token, expireInSeconds, redis.claim(new ArrayList<>(candidates), token, limit, expireInSeconds));
+    }
+}
@@ -1,67 +1,1036 @@
 package com.github.verils.dlock.redis.client;
 
-import com.github.verils.dlock.redis.RedisClient;
+import com.github.verils.dlock.metrics.LockMetrics;
+import com.github.verils.dlock.redis.BinaryRedisClient;
+import com.github.verils.dlock.redis.FairRedisClient;
+import com.github.verils.dlock.redis.ReadWriteRedisClient;
+import com.github.verils.dlock.redis.RedisSession;
+import com.github.verils.dlock.redis.ReleaseSubscription;
+import com.github.verils.dlock.redis.RemoteLock;
+import com.github.verils.dlock.redis.SemaphoreRedisClient;
+import com.github.verils.dlock.redis.SessionRedisClient;
 import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.SafeEncoder;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Slf4j
-public class JedisClient implements RedisClient {
+public class JedisClient implements BinaryRedisClient, FairRedisClient, ReadWriteRedisClient, SemaphoreRedisClient,
+        SessionRedisClient, Closeable {
 
     private static final String STATUS_OK = "OK";
 
     private static final String NX = "NX";
 
     /**
-     * 单位：秒
+     * 单位：毫秒。以秒为单位的租约也换算为毫秒，所有的锁都使用{@code PX}与{@code PEXPIRE}
      */
-    private static final String EX = "EX";
+    private static final String PX = "PX";
 
     /**
-     * 单位：毫秒
+     * 公平锁等待队列与心跳超时的键名称后缀
      */
-    private static final String PX = "PX";
+    private static final String QUEUE_SUFFIX = ":queue";
+    private static final String TIMEOUT_SUFFIX = ":timeout";
+
+    /**
+     * 读写锁哈希中读锁字段与写锁字段的前缀
+     */
+    private static final String READ_FIELD_PREFIX = "r:";
+    private static final String WRITE_FIELD_PREFIX = "w:";
+
+    private static final byte[] BINARY_NX = SafeEncoder.encode(NX);
+
+    private static final byte[] BINARY_PX = SafeEncoder.encode(PX);
+
+    private static final byte[] BINARY_CHANNEL_PREFIX = SafeEncoder.encode(JedisReleaseSubscriber.CHANNEL_PREFIX);
+
+    /**
+     * 键不存在时写入锁并返回0，否则返回锁剩余的存活毫秒数。剩余时间恰好为0时返回1，以免与获取成功混淆。
+     * 键的值已经是ARGV[1]时重置过期时间并返回0，超时后用同一个锁标识重试的调用不会被自己先前生效的写入挡住
+     */
+    static final JedisScript ACQUIRE_OR_TTL_SCRIPT = new JedisScript(
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+                    "return 0 " +
+                    "end " +
+                    "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "return 0 " +
+                    "end " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl == 0 then " +
+                    "return 1 " +
+                    "end " +
+                    "return ttl");
+
+    /**
+     * 同时取出锁的值与剩余的存活毫秒数，锁不存在时返回nil
+     */
+    static final JedisScript INSPECT_SCRIPT = new JedisScript(
+            "local value = redis.call('get', KEYS[1]) " +
+                    "if not value then " +
+                    "return nil " +
+                    "end " +
+                    "return {value, redis.call('pttl', KEYS[1])}");
+
+    /**
+     * 仅当键的值与锁标识一致时才删除键。如果传入了频道名称，删除后在该频道上发布释放通知
+     */
+    static final JedisScript RELEASE_SCRIPT = new JedisScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "redis.call('del', KEYS[1]) " +
+                    "if ARGV[2] then " +
+                    "redis.call('publish', ARGV[2], ARGV[1]) " +
+                    "end " +
+                    "return 1 " +
+                    "end " +
+                    "return 0");
+
+    /**
+     * 所有键都不存在时才全部写入并返回0，否则返回第一个已存在的键的序号（从1开始）
+     */
+    private static final JedisScript ACQUIRE_ALL_SCRIPT = new JedisScript(
+            "for i = 1, #KEYS do " +
+                    "if redis.call('exists', KEYS[i]) == 1 then " +
+                    "return i " +
+                    "end " +
+                    "end " +
+                    "for i = 1, #KEYS do " +
+                    "redis.call('set', KEYS[i], ARGV[1], 'PX', ARGV[2]) " +
+                    "end " +
+                    "return 0");
+
+    /**
+     * 依次尝试写入候选的键，跳过已存在的键，认领到ARGV[3]个键后停止，返回认领到的键
+     */
+    private static final JedisScript CLAIM_SCRIPT = new JedisScript(
+            "local claimed = {} " +
+                    "local limit = tonumber(ARGV[3]) " +
+                    "for i = 1, #KEYS do " +
+                    "if #claimed >= limit then " +
+                    "break " +
+                    "end " +
+                    "if redis.call('set', KEYS[i], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+                    "claimed[#claimed + 1] = KEYS[i] " +
+                    "end " +
+                    "end " +
+                    "return claimed");
+
+    /**
+     * 逐个删除值与锁标识一致的键，返回删除的数量。如果传入了频道前缀，在前缀加键名称的频道上发布释放通知
+     */
+    private static final JedisScript RELEASE_ALL_SCRIPT = new JedisScript(
+            "local released = 0 " +
+                    "for i = 1, #KEYS do " +
+                    "if redis.call('get', KEYS[i]) == ARGV[1] then " +
+                    "redis.call('del', KEYS[i]) " +
+                    "released = released + 1 " +
+                    "if ARGV[2] then " +
+                    "redis.call('publish', ARGV[2] .. KEYS[i], ARGV[1]) " +
+                    "end " +
+                    "end " +
+                    "end " +
+                    "return released");
+
+    /**
+     * 先移出心跳超时的等待者。锁空闲并且ARGV[1]位于队首（或者队列为空）时获取锁并返回0，否则将ARGV[1]加入队尾或刷新其心跳，
+     * 返回锁剩余的存活毫秒数，锁空闲时返回1。KEYS依次为锁、等待队列、心跳超时时间
+     */
+    private static final JedisScript ACQUIRE_FAIR_SCRIPT = new JedisScript(
+            "redis.replicate_commands() " +
+                    "local time = redis.call('time') " +
+                    "local now = time[1] * 1000 + math.floor(time[2] / 1000) " +
+                    "local stale = redis.call('zrangebyscore', KEYS[3], '-inf', now) " +
+                    "for i = 1, #stale do " +
+                    "redis.call('lrem', KEYS[2], 0, stale[i]) " +
+                    "redis.call('zrem', KEYS[3], stale[i]) " +
+                    "end " +
+                    "local head = redis.call('lindex', KEYS[2], 0) " +
+                    "if redis.call('exists', KEYS[1]) == 0 and (not head or head == ARGV[1]) then " +
+                    "if head then " +
+                    "redis.call('lpop', KEYS[2]) " +
+                    "redis.call('zrem', KEYS[3], ARGV[1]) " +
+                    "end " +
+                    "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+                    "return 0 " +
+                    "end " +
+                    "local heartbeat = tonumber(ARGV[3]) " +
+                    "if not redis.call('zscore', KEYS[3], ARGV[1]) then " +
+                    "redis.call('rpush', KEYS[2], ARGV[1]) " +
+                    "end " +
+                    "redis.call('zadd', KEYS[3], now + heartbeat, ARGV[1]) " +
+                    "for i = 2, 3 do " +
+                    "if redis.call('pttl', KEYS[i]) < heartbeat then " +
+                    "redis.call('pexpire', KEYS[i], heartbeat) " +
+                    "end " +
+                    "end " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl > 0 then " +
+                    "return ttl " +
+                    "end " +
+                    "return 1");
+
+    /**
+     * 仅当锁的值与锁标识一致时才删除锁。如果传入了频道前缀，只在前缀加队首等待者的频道上发布释放通知
+     */
+    private static final JedisScript RELEASE_FAIR_SCRIPT = new JedisScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "redis.call('del', KEYS[1]) " +
+                    "if ARGV[2] then " +
+                    "local head = redis.call('lindex', KEYS[2], 0) " +
+                    "if head then " +
+                    "redis.call('publish', ARGV[2] .. ':' .. head, ARGV[1]) " +
+                    "end " +
+                    "end " +
+                    "return 1 " +
+                    "end " +
+                    "return 0");
+
+    /**
+     * 将ARGV[1]移出等待队列。如果它原本位于队首并且锁空闲，通知新的队首等待者
+     */
+    private static final JedisScript CANCEL_FAIR_SCRIPT = new JedisScript(
+            "local head = redis.call('lindex', KEYS[2], 0) " +
+                    "redis.call('lrem', KEYS[2], 0, ARGV[1]) " +
+                    "redis.call('zrem', KEYS[3], ARGV[1]) " +
+                    "if ARGV[2] and head == ARGV[1] and redis.call('exists', KEYS[1]) == 0 then " +
+                    "local next = redis.call('lindex', KEYS[2], 0) " +
+                    "if next then " +
+                    "redis.call('publish', ARGV[2] .. ':' .. next, ARGV[1]) " +
+                    "end " +
+                    "end " +
+                    "return 0");
+
+    /**
+     * 读写锁脚本的公共开头：以Redis服务器时间为准，清除租约已到期的字段。之后的脚本可以使用变量now与fields
+     */
+    private static final String PURGE_EXPIRED_FIELDS =
+            "redis.replicate_commands() " +
+                    "local time = redis.call('time') " +
+                    "local now = time[1] * 1000 + math.floor(time[2] / 1000) " +
+                    "local fields = redis.call('hgetall', KEYS[1]) " +
+                    "for i = 1, #fields, 2 do " +
+                    "if tonumber(fields[i + 1]) <= now then " +
+                    "redis.call('hdel', KEYS[1], fields[i]) " +
+                    "end " +
+                    "end ";
+
+    /**
+     * 写入ARGV[1]字段，租约为ARGV[3]毫秒，键的过期时间不短于该租约
+     */
+    private static final String HOLD_FIELD =
+            "redis.call('hset', KEYS[1], ARGV[1], now + tonumber(ARGV[3])) " +
+                    "if redis.call('pttl', KEYS[1]) < tonumber(ARGV[3]) then " +
+                    "redis.call('pexpire', KEYS[1], ARGV[3]) " +
+                    "end " +
+                    "return 0";
+
+    /**
+     * 不存在其他持有者的写锁字段时写入读锁字段ARGV[1]并返回0，否则返回写锁剩余的毫秒数。ARGV[2]为同一持有者的写锁字段
+     */
+    private static final JedisScript ACQUIRE_READ_SCRIPT = new JedisScript(
+            PURGE_EXPIRED_FIELDS +
+                    "local wait = 0 " +
+                    "for i = 1, #fields, 2 do " +
+                    "local remaining = tonumber(fields[i + 1]) - now " +
+                    "if remaining > 0 and string.sub(fields[i], 1, 2) == 'w:' and fields[i] ~= ARGV[2] then " +
+                    "wait = math.max(wait, remaining) " +
+                    "end " +
+                    "end " +
+                    "if wait > 0 then " +
+                    "return wait " +
+                    "end " +
+                    HOLD_FIELD);
+
+    /**
+     * 不存在其他持有者的字段时写入写锁字段ARGV[1]并返回0，否则返回其他持有者中最晚到期的剩余毫秒数。ARGV[2]为同一持有者的读锁字段
+     */
+    private static final JedisScript ACQUIRE_WRITE_SCRIPT = new JedisScript(
+            PURGE_EXPIRED_FIELDS +
+                    "local wait = 0 " +
+                    "for i = 1, #fields, 2 do " +
+                    "local remaining = tonumber(fields[i + 1]) - now " +
+                    "if remaining > 0 and fields[i] ~= ARGV[1] and fields[i] ~= ARGV[2] then " +
+                    "wait = math.max(wait, remaining) " +
+                    "end " +
+                    "end " +
+                    "if wait > 0 then " +
+                    "return wait " +
+                    "end " +
+                    HOLD_FIELD);
+
+    /**
+     * 字段ARGV[1]的租约未到期时将其重置为ARGV[2]毫秒
+     */
+    private static final JedisScript RENEW_FIELD_SCRIPT = new JedisScript(
+            "redis.replicate_commands() " +
+                    "local time = redis.call('time') " +
+                    "local now = time[1] * 1000 + math.floor(time[2] / 1000) " +
+                    "local deadline = tonumber(redis.call('hget', KEYS[1], ARGV[1])) " +
+                    "if not deadline or deadline <= now then " +
+                    "return 0 " +
+                    "end " +
+                    "redis.call('hset', KEYS[1], ARGV[1], now + tonumber(ARGV[2])) " +
+                    "if redis.call('pttl', KEYS[1]) < tonumber(ARGV[2]) then " +
+                    "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return 1");
+
+    /**
+     * 删除字段ARGV[1]，哈希为空时删除整个键。如果传入了频道名称，在该频道上发布释放通知。字段存在且租约未到期时返回1
+     */
+    private static final JedisScript RELEASE_FIELD_SCRIPT = new JedisScript(
+            "redis.replicate_commands() " +
+                    "local time = redis.call('time') " +
+                    "local now = time[1] * 1000 + math.floor(time[2] / 1000) " +
+                    "local deadline = tonumber(redis.call('hget', KEYS[1], ARGV[1])) " +
+                    "if not deadline then " +
+                    "return 0 " +
+                    "end " +
+                    "redis.call('hdel', KEYS[1], ARGV[1]) " +
+                    "if redis.call('hlen', KEYS[1]) == 0 then " +
+                    "redis.call('del', KEYS[1]) " +
+                    "end " +
+                    "if ARGV[2] then " +
+                    "redis.call('publish', ARGV[2], ARGV[1]) " +
+                    "end " +
+                    "if deadline <= now then " +
+                    "return 0 " +
+                    "end " +
+                    "return 1");
+
+    /**
+     * 清除到期的许可后，剩余许可不少于ARGV[2]个时获取其中尽可能多但不超过ARGV[3]个，成员名称为ARGV[5]加序号，租约为ARGV[4]毫秒。
+     * ARGV[1]为许可总数，返回获取到的成员名称
+     */
+    private static final JedisScript ACQUIRE_PERMITS_SCRIPT = new JedisScript(
+            "redis.replicate_commands() " +
+                    "local time = redis.call('time') " +
+                    "local now = time[1] * 1000 + math.floor(time[2] / 1000) " +
+                    "redis.call('zremrangebyscore', KEYS[1], '-inf', now) " +
+                    "local available = tonumber(ARGV[1]) - redis.call('zcard', KEYS[1]) " +
+                    "if available < tonumber(ARGV[2]) then " +
+                    "return {} " +
+                    "end " +
+                    "local lease = tonumber(ARGV[4]) " +
+                    "local acquired = {} " +
+                    "for i = 1, math.min(available, tonumber(ARGV[3])) do " +
+                    "acquired[i] = ARGV[5] .. ':' .. i " +
+                    "redis.call('zadd', KEYS[1], now + lease, acquired[i]) " +
+                    "end " +
+                    "if redis.call('pttl', KEYS[1]) < lease then " +
+                    "redis.call('pexpire', KEYS[1], lease) " +
+                    "end " +
+                    "return acquired");
+
+    /**
+     * 清除到期的许可后删除ARGV[2]及之后的成员，返回删除的数量。如果传入了频道名称ARGV[1]，在该频道上发布释放通知
+     */
+    private static final JedisScript RELEASE_PERMITS_SCRIPT = new JedisScript(
+            "redis.replicate_commands() " +
+                    "local time = redis.call('time') " +
+                    "local now = time[1] * 1000 + math.floor(time[2] / 1000) " +
+                    "redis.call('zremrangebyscore', KEYS[1], '-inf', now) " +
+                    "local released = 0 " +
+                    "for i = 2, #ARGV do " +
+                    "released = released + redis.call('zrem', KEYS[1], ARGV[i]) " +
+                    "end " +
+                    "if ARGV[1] ~= '' then " +
+                    "redis.call('publish', ARGV[1], released) " +
+                    "end " +
+                    "return released");
+
+    /**
+     * 逐个检查键的值与锁标识，一致时重置过期时间（毫秒），返回续期成功的键
+     */
+    static final JedisScript RENEW_SCRIPT = new JedisScript(
+            "local renewed = {} " +
+                    "for i = 1, #KEYS do " +
+                    "if redis.call('get', KEYS[i]) == ARGV[i + 1] then " +
+                    "redis.call('pexpire', KEYS[i], ARGV[1]) " +
+                    "renewed[#renewed + 1] = KEYS[i] " +
+                    "end " +
+                    "end " +
+                    "return renewed");
 
     private final JedisPool jedisPool;
 
+    private final JedisReleaseSubscriber subscriber;
+
+    /**
+     * 限制同时执行的Redis命令数量，为null时不限制
+     */
+    private final Semaphore inFlight;
+
+    private final LockMetrics metrics;
+
+    /**
+     * 为true时{@link #openSession()}打开的会话在锁的持有期间固定使用一个连接
+     */
+    private final boolean pinConnections;
+
+    /**
+     * 不固定连接的会话没有状态，所有的锁共用一个
+     */
+    private final JedisSession unpinnedSession;
+
     public JedisClient(JedisPool jedisPool) {
+        this(jedisPool, false);
+    }
+
+    public JedisClient(JedisPool jedisPool, boolean notifyOnRelease) {
+        this(jedisPool, notifyOnRelease, 0);
+    }
+
+    /**
+     * @param jedisPool        Pool providing connections to redis
+     * @param notifyOnRelease  Whether to publish a notification on every release and let waiters block on it instead of
+     *                         polling. One connection of the pool is held by the subscription while this client is open.
+     * @param maxInFlight      Maximum number of commands executed at the same time, {@code 0} for no limit. Callers over
+     *                         the limit wait on a semaphore rather than inside the pool, which parks virtual threads
+     *                         cheaply. Keep it below the pool's max total (minus one with {@code notifyOnRelease}) so that
+     *                         borrowing a connection never blocks.
+     */
+    public JedisClient(JedisPool jedisPool, boolean notifyOnRelease, int maxInFlight) {
+        this(jedisPool, notifyOnRelease, maxInFlight, LockMetrics.NOOP);
+    }
+
+    /**
+     * @param jedisPool       Pool providing connections to redis
+     * @param notifyOnRelease Whether to publish a notification on every release and let waiters block on it instead of
+     *                        polling
+     * @param maxInFlight     Maximum number of commands executed at the same time, {@code 0} for no limit
+     * @param metrics         Receives the round-trip time of every operation, named after the method of this client
+     */
+    public JedisClient(JedisPool jedisPool, boolean notifyOnRelease, int maxInFlight, LockMetrics metrics) {
+        this(jedisPool, notifyOnRelease, maxInFlight, metrics, false);
+    }
+
+    /**
+     * @param jedisPool       Pool providing connections to redis
+     * @param notifyOnRelease Whether to publish a notification on every release and let waiters block on it instead of
+     *                        polling
+     * @param maxInFlight     Maximum number of commands executed at the same time, {@code 0} for no limit
+     * @param metrics         Receives the round-trip time of every operation, named after the method of this client
+     * @param pinConnections  Whether a lock keeps the connection of its successful attempt until it is released, so
+     *                        that a whole hold borrows from the pool once. Every held lock occupies a connection, and
+     *                        one of {@code maxInFlight} if limited, size the pool for the locks held at the same time
+     */
+    public JedisClient(JedisPool jedisPool, boolean notifyOnRelease, int maxInFlight, LockMetrics metrics,
+                       boolean pinConnections) {
         this.jedisPool = jedisPool;
+        this.metrics = metrics;
+        this.pinConnections = pinConnections;
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        if (notifyOnRelease) {
+            this.subscriber = new JedisReleaseSubscriber(jedisPool);
+            Thread thread = new Thread(subscriber, "dlock-release-subscriber");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            this.subscriber = null;
+        }
+        this.unpinnedSession = pinConnections ? null : new JedisSession(this, false);
+    }
+
+    /**
+     * 会话使用的构造方法，与{@code client}共用连接池、释放通知与并发限制
+     */
+    private JedisClient(JedisClient client) {
+        this.jedisPool = client.jedisPool;
+        this.subscriber = client.subscriber;
+        this.inFlight = client.inFlight;
+        this.metrics = client.metrics;
+        this.pinConnections = false;
+        this.unpinnedSession = null;
     }
 
     @Override
     public boolean tryAcquire(String key, String value, int expireInSeconds) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            String status = jedis.set(key, value, NX, EX, expireInSeconds);
-            boolean acquired = STATUS_OK.equals(status);
-            if (acquired) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Acquired lock [\"{}\" - \"{}\"]", key, value);
-                }
+        return tryAcquire(key, value, TimeUnit.SECONDS.toMillis(expireInSeconds));
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, Duration lease) {
+        return tryAcquire(key, value, millisOf(lease));
+    }
+
+    private boolean tryAcquire(String key, String value, long leaseMillis) {
+        String status = execute("tryAcquire", jedis -> jedis.set(key, value, NX, PX, leaseMillis));
+        boolean acquired = STATUS_OK.equals(status);
+        if (acquired) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired lock [\"{}\" - \"{}\"]", key, value);
             }
-            return acquired;
         }
+        return acquired;
     }
 
     @Override
-    public void expire(String key, int expireInSeconds) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            jedis.expire(key, expireInSeconds);
+    public long tryAcquireOrTtl(String key, String value, int expireInSeconds) {
+        return tryAcquireOrTtl(key, value, TimeUnit.SECONDS.toMillis(expireInSeconds));
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease) {
+        return tryAcquireOrTtl(key, value, millisOf(lease));
+    }
+
+    /**
+     * {@code timeout}用于等待{@code maxInFlight}的空位以及读取响应，从连接池借用连接的等待时间仍由连接池的{@code maxWait}限制。
+     * 读取响应超时后连接被丢弃
+     */
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease, Duration timeout) {
+        return tryAcquireOrTtl(key, value, millisOf(lease), timeout.toNanos());
+    }
+
+    private long tryAcquireOrTtl(String key, String value, long leaseMillis) {
+        return tryAcquireOrTtl(key, value, leaseMillis, -1);
+    }
+
+    private long tryAcquireOrTtl(String key, String value, long leaseMillis, long timeoutNanos) {
+        Object result = execute("tryAcquireOrTtl", timeoutNanos, jedis -> ACQUIRE_OR_TTL_SCRIPT.eval(jedis,
+                Collections.singletonList(key), Arrays.asList(value, String.valueOf(leaseMillis))));
+        long ttl = (Long) result;
+        if (ttl == 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired lock [\"{}\" - \"{}\"]", key, value);
+            }
+        }
+        return ttl;
+    }
+
+    @Override
+    public int tryAcquireAll(List<String> keys, String value, int expireInSeconds) {
+        Object result = execute("tryAcquireAll", jedis -> ACQUIRE_ALL_SCRIPT.eval(jedis, keys,
+                Arrays.asList(value, String.valueOf(TimeUnit.SECONDS.toMillis(expireInSeconds)))));
+        int blocked = ((Long) result).intValue() - 1;
+        if (blocked < 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired locks [{} - \"{}\"]", keys, value);
+            }
+        }
+        return blocked;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> claim(List<String> keys, String value, int limit, int expireInSeconds) {
+        if (keys.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> args = Arrays.asList(value, String.valueOf(TimeUnit.SECONDS.toMillis(expireInSeconds)), String.valueOf(limit));
+        List<String> claimed = (List<String>) execute("claim", jedis -> CLAIM_SCRIPT.eval(jedis, keys, args));
+        if (log.isDebugEnabled()) {
+            log.debug("Claimed {} of {} locks with \"{}\"", claimed.size(), keys.size(), value);
         }
+        return claimed;
+    }
+
+    @Override
+    public void expire(String key, int expireInSeconds) {
+        execute("expire", jedis -> jedis.pexpire(key, TimeUnit.SECONDS.toMillis(expireInSeconds)));
+    }
+
+    @Override
+    public void expire(String key, Duration lease) {
+        execute("expire", jedis -> jedis.pexpire(key, millisOf(lease)));
     }
 
     @Override
     public String getLock(String key) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            return jedis.get(key);
+        return execute("getLock", jedis -> jedis.get(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RemoteLock inspect(String key) {
+        List<Object> result = (List<Object>) execute("inspect", jedis -> INSPECT_SCRIPT.eval(jedis,
+                Collections.singletonList(key), Collections.emptyList()));
+        if (result == null) {
+            return null;
         }
+        return new RemoteLock((String) result.get(0), (Long) result.get(1));
     }
 
     @Override
     public void release(String key) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            jedis.del(key);
+        execute("release", jedis -> jedis.del(key));
+        if (log.isDebugEnabled()) {
+            log.debug("Released lock [\"{}\"]", key);
+        }
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        List<String> args = subscriber == null
+                ? Collections.singletonList(value)
+                : Arrays.asList(value, JedisReleaseSubscriber.CHANNEL_PREFIX + key);
+        Object result = execute("release", jedis -> RELEASE_SCRIPT.eval(jedis, Collections.singletonList(key), args));
+        boolean released = Long.valueOf(1L).equals(result);
+        if (released) {
             if (log.isDebugEnabled()) {
-                log.debug("Released lock [\"{}\"]", key);
+                log.debug("Released lock [\"{}\" - \"{}\"]", key, value);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public boolean releaseAll(List<String> keys, String value) {
+        List<String> args = subscriber == null
+                ? Collections.singletonList(value)
+                : Arrays.asList(value, JedisReleaseSubscriber.CHANNEL_PREFIX);
+        Object result = execute("releaseAll", jedis -> RELEASE_ALL_SCRIPT.eval(jedis, keys, args));
+        boolean released = (Long) result == keys.size();
+        if (released) {
+            if (log.isDebugEnabled()) {
+                log.debug("Released locks [{} - \"{}\"]", keys, value);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public Set<String> renew(Map<String, String> locks, int expireInSeconds) {
+        return renew(locks, TimeUnit.SECONDS.toMillis(expireInSeconds));
+    }
+
+    @Override
+    public Set<String> renew(Map<String, String> locks, Duration lease) {
+        return renew(locks, millisOf(lease));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> renew(Map<String, String> locks, long leaseMillis) {
+        if (locks.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<String> keys = new ArrayList<>(locks.size());
+        List<String> args = new ArrayList<>(locks.size() + 1);
+        args.add(String.valueOf(leaseMillis));
+        for (Map.Entry<String, String> lock : locks.entrySet()) {
+            keys.add(lock.getKey());
+            args.add(lock.getValue());
+        }
+        List<String> renewed = (List<String>) execute("renew", jedis -> RENEW_SCRIPT.eval(jedis, keys, args));
+        if (log.isDebugEnabled()) {
+            log.debug("Renewed {} of {} locks", renewed.size(), locks.size());
+        }
+        return new HashSet<>(renewed);
+    }
+
+    @Override
+    public boolean tryAcquire(byte[] key, byte[] value, Duration lease) {
+        long leaseMillis = millisOf(lease);
+        String status = execute("tryAcquire", jedis -> jedis.set(key, value, BINARY_NX, BINARY_PX, leaseMillis));
+        boolean acquired = STATUS_OK.equals(status);
+        if (acquired) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired lock [\"{}\" - \"{}\"]", SafeEncoder.encode(key), SafeEncoder.encode(value));
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease) {
+        return tryAcquireOrTtl(key, value, lease, -1);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease, Duration timeout) {
+        return tryAcquireOrTtl(key, value, lease, timeout.toNanos());
+    }
+
+    private long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease, long timeoutNanos) {
+        byte[] leaseMillis = Protocol.toByteArray(millisOf(lease));
+        Object result = execute("tryAcquireOrTtl", timeoutNanos, jedis -> ACQUIRE_OR_TTL_SCRIPT.eval(jedis, 1, key, value, leaseMillis));
+        long ttl = (Long) result;
+        if (ttl == 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired lock [\"{}\" - \"{}\"]", SafeEncoder.encode(key), SafeEncoder.encode(value));
+            }
+        }
+        return ttl;
+    }
+
+    @Override
+    public void expire(byte[] key, Duration lease) {
+        execute("expire", jedis -> jedis.pexpire(key, millisOf(lease)));
+    }
+
+    @Override
+    public byte[] getLock(byte[] key) {
+        return execute("getLock", jedis -> jedis.get(key));
+    }
+
+    @Override
+    public boolean release(byte[] key, byte[] value) {
+        Object result = subscriber == null
+                ? execute("release", jedis -> RELEASE_SCRIPT.eval(jedis, 1, key, value))
+                : execute("release", jedis -> RELEASE_SCRIPT.eval(jedis, 1, key, value, channelOf(key)));
+        boolean released = Long.valueOf(1L).equals(result);
+        if (released) {
+            if (log.isDebugEnabled()) {
+                log.debug("Released lock [\"{}\" - \"{}\"]", SafeEncoder.encode(key), SafeEncoder.encode(value));
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public long tryAcquireFair(String key, String value, int expireInSeconds, long heartbeatMillis) {
+        List<String> args = Arrays.asList(value, String.valueOf(TimeUnit.SECONDS.toMillis(expireInSeconds)),
+                String.valueOf(heartbeatMillis));
+        long wait = (Long) execute("tryAcquireFair", jedis -> ACQUIRE_FAIR_SCRIPT.eval(jedis, fairKeys(key), args));
+        if (wait == 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired lock [\"{}\" - \"{}\"]", key, value);
+            }
+        }
+        return wait;
+    }
+
+    @Override
+    public boolean releaseFair(String key, String value) {
+        List<String> args = subscriber == null
+                ? Collections.singletonList(value)
+                : Arrays.asList(value, JedisReleaseSubscriber.CHANNEL_PREFIX + key);
+        Object result = execute("releaseFair", jedis -> RELEASE_FAIR_SCRIPT.eval(jedis, fairKeys(key), args));
+        boolean released = Long.valueOf(1L).equals(result);
+        if (released) {
+            if (log.isDebugEnabled()) {
+                log.debug("Released lock [\"{}\" - \"{}\"]", key, value);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public void cancelFair(String key, String value) {
+        List<String> args = subscriber == null
+                ? Collections.singletonList(value)
+                : Arrays.asList(value, JedisReleaseSubscriber.CHANNEL_PREFIX + key);
+        execute("cancelFair", jedis -> CANCEL_FAIR_SCRIPT.eval(jedis, fairKeys(key), args));
+    }
+
+    private static List<String> fairKeys(String key) {
+        return Arrays.asList(key, key + QUEUE_SUFFIX, key + TIMEOUT_SUFFIX);
+    }
+
+    @Override
+    public long tryAcquireRead(String key, String value, int expireInSeconds) {
+        return acquireField("tryAcquireRead", ACQUIRE_READ_SCRIPT, key, READ_FIELD_PREFIX + value, WRITE_FIELD_PREFIX + value, expireInSeconds);
+    }
+
+    @Override
+    public long tryAcquireWrite(String key, String value, int expireInSeconds) {
+        return acquireField("tryAcquireWrite", ACQUIRE_WRITE_SCRIPT, key, WRITE_FIELD_PREFIX + value, READ_FIELD_PREFIX + value, expireInSeconds);
+    }
+
+    @Override
+    public boolean renewRead(String key, String value, int expireInSeconds) {
+        return renewField("renewRead", key, READ_FIELD_PREFIX + value, expireInSeconds);
+    }
+
+    @Override
+    public boolean renewWrite(String key, String value, int expireInSeconds) {
+        return renewField("renewWrite", key, WRITE_FIELD_PREFIX + value, expireInSeconds);
+    }
+
+    @Override
+    public boolean releaseRead(String key, String value) {
+        return releaseField("releaseRead", key, READ_FIELD_PREFIX + value);
+    }
+
+    @Override
+    public boolean releaseWrite(String key, String value) {
+        return releaseField("releaseWrite", key, WRITE_FIELD_PREFIX + value);
+    }
+
+    private long acquireField(String name, JedisScript script, String key, String field, String ownField, int expireInSeconds) {
+        List<String> args = Arrays.asList(field, ownField, String.valueOf(TimeUnit.SECONDS.toMillis(expireInSeconds)));
+        long wait = (Long) execute(name, jedis -> script.eval(jedis, Collections.singletonList(key), args));
+        if (wait == 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired lock [\"{}\" - \"{}\"]", key, field);
+            }
+        }
+        return wait;
+    }
+
+    private boolean renewField(String name, String key, String field, int expireInSeconds) {
+        List<String> args = Arrays.asList(field, String.valueOf(TimeUnit.SECONDS.toMillis(expireInSeconds)));
+        Object result = execute(name, jedis -> RENEW_FIELD_SCRIPT.eval(jedis, Collections.singletonList(key), args));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    private boolean releaseField(String name, String key, String field) {
+        List<String> args = subscriber == null
+                ? Collections.singletonList(field)
+                : Arrays.asList(field, JedisReleaseSubscriber.CHANNEL_PREFIX + key);
+        Object result = execute(name, jedis -> RELEASE_FIELD_SCRIPT.eval(jedis, Collections.singletonList(key), args));
+        boolean released = Long.valueOf(1L).equals(result);
+        if (released) {
+            if (log.isDebugEnabled()) {
+                log.debug("Released lock [\"{}\" - \"{}\"]", key, field);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> tryAcquirePermits(String key, int permits, String prefix, int min, int max, int expireInSeconds) {
+        List<String> args = Arrays.asList(String.valueOf(permits), String.valueOf(min), String.valueOf(max),
+                String.valueOf(TimeUnit.SECONDS.toMillis(expireInSeconds)), prefix);
+        List<String> acquired = (List<String>) execute("tryAcquirePermits", jedis -> ACQUIRE_PERMITS_SCRIPT.eval(jedis, Collections.singletonList(key), args));
+        if (!acquired.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Acquired {} permits of [\"{}\"]", acquired.size(), key);
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public int releasePermits(String key, List<String> permitNames) {
+        if (permitNames.isEmpty()) {
+            return 0;
+        }
+        List<String> args = new ArrayList<>(permitNames.size() + 1);
+        args.add(subscriber == null ? "" : JedisReleaseSubscriber.CHANNEL_PREFIX + key);
+        args.addAll(permitNames);
+        int released = ((Long) execute("releasePermits", jedis -> RELEASE_PERMITS_SCRIPT.eval(jedis, Collections.singletonList(key), args))).intValue();
+        if (log.isDebugEnabled()) {
+            log.debug("Released {} of {} permits of [\"{}\"]", released, permitNames.size(), key);
+        }
+        return released;
+    }
+
+    @Override
+    public void awaitRelease(String key, long timeoutMillis) throws InterruptedException {
+        if (subscriber == null) {
+            Thread.sleep(timeoutMillis);
+            return;
+        }
+        subscriber.await(key, timeoutMillis);
+    }
+
+    /**
+     * 未开启{@code notifyOnRelease}时不支持释放通知，返回null
+     */
+    @Override
+    public ReleaseSubscription subscribeRelease(String key) throws InterruptedException {
+        return subscriber != null ? subscriber.subscribe(key) : null;
+    }
+
+    /**
+     * 未开启{@code pinConnections}时，会话的每次调用仍然各自从连接池借用连接
+     */
+    @Override
+    public RedisSession openSession() {
+        return pinConnections ? new JedisSession(this, true) : unpinnedSession;
+    }
+
+    /**
+     * 停止接收锁释放通知，连接池由调用者负责关闭
+     */
+    @Override
+    public void close() {
+        if (subscriber != null) {
+            subscriber.close();
+        }
+    }
+
+    /**
+     * 租约换算为毫秒，至少为1毫秒，{@code PX 0}会被Redis拒绝
+     */
+    private static long millisOf(Duration lease) {
+        return Math.max(1, lease.toMillis());
+    }
+
+    private boolean tryAcquireInFlight(long timeoutNanos) {
+        try {
+            return inFlight.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 把连接的读超时缩短为剩余的期限，至少为1毫秒
+     *
+     * @return 连接原有的读超时，调用结束后恢复
+     */
+    private static int limitSoTimeout(Jedis jedis, long remainingNanos) {
+        Client client = jedis.getClient();
+        int soTimeout = client.getSoTimeout();
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos + 999_999));
+        if (soTimeout > 0 && soTimeout <= millis) {
+            return -1;
+        }
+        client.setSoTimeout((int) Math.min(Integer.MAX_VALUE, millis));
+        client.rollbackTimeout();
+        return soTimeout;
+    }
+
+    /**
+     * 恢复连接原有的读超时。超时的连接直接断开，连接池销毁它时不会再发送{@code QUIT}并等待响应
+     */
+    private static void restoreSoTimeout(Jedis jedis, int soTimeout) {
+        Client client = jedis.getClient();
+        if (client.isBroken()) {
+            client.disconnect();
+            return;
+        }
+        client.setSoTimeout(soTimeout);
+        client.rollbackTimeout();
+    }
+
+    private static byte[] channelOf(byte[] key) {
+        byte[] channel = Arrays.copyOf(BINARY_CHANNEL_PREFIX, BINARY_CHANNEL_PREFIX.length + key.length);
+        System.arraycopy(key, 0, channel, BINARY_CHANNEL_PREFIX.length, key.length);
+        return channel;
+    }
+
+    /**
+     * @param name 操作名称，随往返时间一起交给{@link LockMetrics}
+     */
+    private <T> T execute(String name, Function<Jedis, T> command) {
+        return execute(name, -1, command);
+    }
+
+    /**
+     * @param name         操作名称，随往返时间一起交给{@link LockMetrics}
+     * @param timeoutNanos 本次调用的最长耗时，小于0表示使用连接原有的超时时间
+     */
+    private <T> T execute(String name, long timeoutNanos, Function<Jedis, T> command) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        Jedis jedis = borrow(name, timeoutNanos);
+        try {
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            int soTimeout = timeoutNanos < 0 ? -1 : limitSoTimeout(jedis, deadline - start);
+            try {
+                T result = command.apply(jedis);
+                succeeded = true;
+                return result;
+            } finally {
+                metrics.commandCompleted(name, System.nanoTime() - start, succeeded);
+                if (soTimeout >= 0) {
+                    restoreSoTimeout(jedis, soTimeout);
+                }
+            }
+        } finally {
+            giveBack(jedis);
+        }
+    }
+
+    /**
+     * 从连接池借用一个连接，限制了并发数时先占用一个名额。等待名额超时的操作没有发出命令，
+     * 以{@code name + ".queued"}的名称报告实际等待的时间，不计入该操作的往返时间
+     */
+    Jedis borrow(String name, long timeoutNanos) {
+        if (inFlight != null) {
+            if (timeoutNanos < 0) {
+                inFlight.acquireUninterruptibly();
+            } else {
+                long start = System.nanoTime();
+                if (!tryAcquireInFlight(timeoutNanos)) {
+                    metrics.commandCompleted(name + ".queued", System.nanoTime() - start, false);
+                    throw new JedisConnectionException("Timed out waiting to execute " + name);
+                }
+            }
+        }
+        try {
+            return jedisPool.getResource();
+        } catch (RuntimeException e) {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 归还{@link #borrow(String, long)}借用的连接
+     */
+    void giveBack(Jedis jedis) {
+        try {
+            jedis.close();
+        } finally {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * 固定使用一个连接的会话。连接在第一次调用时借用，断开的连接立即归还，下一次调用重新借用
+     */
+    private static class JedisSession extends JedisClient implements RedisSession {
+
+        private final boolean pinned;
+
+        private Jedis connection;
+
+        private JedisSession(JedisClient client, boolean pinned) {
+            super(client);
+            this.pinned = pinned;
+        }
+
+        @Override
+        public RedisSession openSession() {
+            return pinned ? new JedisSession(this, true) : this;
+        }
+
+        @Override
+        Jedis borrow(String name, long timeoutNanos) {
+            if (!pinned) {
+                return super.borrow(name, timeoutNanos);
+            }
+            if (connection == null) {
+                connection = super.borrow(name, timeoutNanos);
+            }
+            return connection;
+        }
+
+        @Override
+        void giveBack(Jedis jedis) {
+            if (!pinned) {
+                super.giveBack(jedis);
+            } else if (jedis.getClient().isBroken()) {
+                connection = null;
+                super.giveBack(jedis);
+            }
+        }
+
+        @Override
+        public void close() {
+            Jedis jedis = connection;
+            if (jedis != null) {
+                connection = null;
+                super.giveBack(jedis);
             }
         }
     }
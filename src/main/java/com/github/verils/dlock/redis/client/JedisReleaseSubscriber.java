@@ -0,0 +1,348 @@
+package com.github.verils.dlock.redis.client;
+
+import com.github.verils.dlock.redis.ReleaseSubscription;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 锁释放通知的订阅者。每个{@link JedisClient}只占用一个连接，只订阅本进程中有线程在等待的键的频道，没有等待者的键的释放消息不会发送到本进程
+ * <p>
+ * 每条释放消息只唤醒一个{@link #subscribe(String) 订阅}，{@link #await(String, long)}的等待者不受此限制，每次释放都会被唤醒。
+ * 订阅连接断开时唤醒所有的等待者，由它们重新尝试获取锁，重新连接后恢复所有的订阅
+ */
+@Slf4j
+class JedisReleaseSubscriber extends JedisPubSub implements Runnable {
+
+    static final String CHANNEL_PREFIX = "dlock:released:";
+
+    /**
+     * 连接建立时订阅的频道，使连接在没有等待者时也保持订阅状态，不会有消息发布到该频道
+     */
+    private static final String IDLE_CHANNEL = "dlock:idle";
+
+    private static final long RECONNECT_MILLISECONDS = 1000;
+
+    /**
+     * 等待订阅生效的最长时间，超时后订阅仍然有效，只是等待者退回到轮询的间隔
+     */
+    private static final long SUBSCRIBE_TIMEOUT_MILLISECONDS = 1000;
+
+    private final JedisPool jedisPool;
+
+    /**
+     * 保护{@link #channels}与{@link #connected}，并且保证同一时刻只有一个线程在订阅连接上发送命令。不使用{@code synchronized}，以免在虚拟线程中占用载体线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition subscribed = lock.newCondition();
+
+    private final Map<String, Channel> channels = new HashMap<>();
+
+    private boolean connected;
+
+    private volatile boolean closed;
+
+    JedisReleaseSubscriber(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * 订阅名为{@code key}的锁的释放通知，订阅连接正常时等待Redis确认订阅后才返回
+     */
+    ReleaseSubscription subscribe(String key) throws InterruptedException {
+        Waiter waiter = new Waiter(key, true);
+        lock.lock();
+        try {
+            Channel channel = register(waiter);
+            long nanos = TimeUnit.MILLISECONDS.toNanos(SUBSCRIBE_TIMEOUT_MILLISECONDS);
+            while (connected && !channel.subscribed && nanos > 0) {
+                nanos = subscribed.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            unregister(waiter);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        return waiter;
+    }
+
+    /**
+     * 等待名为{@code key}的锁被释放，直到收到通知、超时或者线程被中断。调用之前发布的通知不会被收到
+     */
+    void await(String key, long timeoutMillis) throws InterruptedException {
+        Waiter waiter = new Waiter(key, false);
+        lock.lock();
+        try {
+            register(waiter);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            waiter.await(timeoutMillis);
+        } finally {
+            waiter.close();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.subscribe(this, IDLE_CHANNEL);
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+                disconnected();
+                log.warn("Lost subscription to lock release notifications, reconnect in {}ms", RECONNECT_MILLISECONDS, e);
+                try {
+                    Thread.sleep(RECONNECT_MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        lock.lock();
+        try {
+            if (connected) {
+                connected = false;
+                unsubscribe();
+            }
+        } catch (Exception e) {
+            log.debug("Failed to unsubscribe from lock release notifications", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 连接建立后恢复所有的订阅；其他频道的订阅生效后唤醒等待订阅的线程
+     */
+    @Override
+    public void onSubscribe(String name, int subscribedChannels) {
+        lock.lock();
+        try {
+            if (IDLE_CHANNEL.equals(name)) {
+                connected = true;
+                if (!channels.isEmpty()) {
+                    send(true, channels.keySet().stream().map(key -> CHANNEL_PREFIX + key).toArray(String[]::new));
+                }
+                return;
+            }
+            String key = name.substring(CHANNEL_PREFIX.length());
+            Channel channel = channels.get(key);
+            if (channel == null) {
+                return;
+            }
+            channel.subscribed = true;
+            if (channel.waiters.isEmpty()) {
+                channels.remove(key);
+                send(false, name);
+            }
+            subscribed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onMessage(String name, String message) {
+        if (!name.startsWith(CHANNEL_PREFIX)) {
+            return;
+        }
+        lock.lock();
+        try {
+            Channel channel = channels.get(name.substring(CHANNEL_PREFIX.length()));
+            if (channel != null) {
+                channel.notifyWaiters();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Channel register(Waiter waiter) {
+        Channel channel = channels.get(waiter.key);
+        if (channel == null) {
+            channel = new Channel();
+            channels.put(waiter.key, channel);
+            if (connected) {
+                send(true, CHANNEL_PREFIX + waiter.key);
+            }
+        }
+        channel.waiters.add(waiter);
+        return channel;
+    }
+
+    /**
+     * 移除等待者，最后一个等待者离开后取消订阅。订阅尚未生效时保留频道，由{@link #onSubscribe(String, int)}取消订阅
+     */
+    private void unregister(Waiter waiter) {
+        Channel channel = channels.get(waiter.key);
+        if (channel == null || !channel.waiters.remove(waiter)) {
+            return;
+        }
+        if (waiter.exclusive && waiter.notified) {
+            channel.notifyNext();
+        }
+        if (channel.waiters.isEmpty() && (channel.subscribed || !connected)) {
+            channels.remove(waiter.key);
+            if (connected) {
+                send(false, CHANNEL_PREFIX + waiter.key);
+            }
+        }
+    }
+
+    /**
+     * 在订阅连接上发送命令，只能在持有{@link #lock}时调用。发送失败说明连接已经断开，由{@link #run()}负责重新连接
+     */
+    private void send(boolean subscribe, String... names) {
+        try {
+            if (subscribe) {
+                subscribe(names);
+            } else {
+                unsubscribe(names);
+            }
+        } catch (Exception e) {
+            log.debug("Failed to update subscription of lock release notifications", e);
+        }
+    }
+
+    /**
+     * 订阅连接断开，期间的通知可能已经丢失，唤醒所有的等待者重新尝试
+     */
+    private void disconnected() {
+        lock.lock();
+        try {
+            connected = false;
+            for (Channel channel : channels.values()) {
+                channel.subscribed = false;
+                for (Waiter waiter : channel.waiters) {
+                    waiter.wake();
+                }
+            }
+            subscribed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一个键的频道与在该键上等待的线程，只在持有{@link #lock}时访问
+     */
+    private static class Channel {
+
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+        /**
+         * Redis已确认订阅
+         */
+        private boolean subscribed;
+
+        /**
+         * 唤醒所有{@link #await(String, long)}的等待者，以及最早登记的一个尚未被唤醒的订阅
+         */
+        private void notifyWaiters() {
+            boolean notified = false;
+            for (Waiter waiter : waiters) {
+                if (!waiter.exclusive) {
+                    waiter.wake();
+                } else if (!notified && !waiter.notified) {
+                    waiter.wake();
+                    notified = true;
+                }
+            }
+        }
+
+        private void notifyNext() {
+            for (Waiter waiter : waiters) {
+                if (waiter.exclusive && !waiter.notified) {
+                    waiter.wake();
+                    return;
+                }
+            }
+        }
+    }
+
+    private class Waiter implements ReleaseSubscription {
+
+        private final String key;
+
+        /**
+         * 为true时每次释放只唤醒同一个键上的一个这类等待者
+         */
+        private final boolean exclusive;
+
+        private volatile Thread thread;
+
+        private volatile boolean notified;
+
+        private Waiter(String key, boolean exclusive) {
+            this.key = key;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public boolean isSubscribed() {
+            lock.lock();
+            try {
+                Channel channel = channels.get(key);
+                return channel != null && channel.subscribed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void await(long timeoutMillis) throws InterruptedException {
+            thread = Thread.currentThread();
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                long remaining;
+                while (!notified && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                notified = false;
+            } finally {
+                thread = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                unregister(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void wake() {
+            notified = true;
+            Thread thread = this.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
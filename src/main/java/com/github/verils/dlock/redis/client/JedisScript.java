@@ -0,0 +1,78 @@
+package com.github.verils.dlock.redis.client;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * 可缓存的Lua脚本。脚本的SHA1摘要在本地计算，执行时优先使用EVALSHA，只有当Redis的脚本缓存中不存在该脚本时（首次执行或缓存被清空），才退回到EVAL
+ */
+class JedisScript {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String script;
+    private final String sha;
+
+    private final byte[] encodedScript;
+    private final byte[] encodedSha;
+
+    JedisScript(String script) {
+        this.script = script;
+        this.sha = sha1(script);
+        this.encodedScript = script.getBytes(StandardCharsets.UTF_8);
+        this.encodedSha = sha.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    Object eval(Jedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(script, keys, args);
+        }
+    }
+
+    /**
+     * 以二进制参数执行脚本，{@code params}中前{@code keyCount}个为键名称，其余为参数
+     */
+    Object eval(Jedis jedis, int keyCount, byte[]... params) {
+        try {
+            return jedis.evalsha(encodedSha, keyCount, params);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(encodedScript, keyCount, params);
+        }
+    }
+
+    /**
+     * 在管道中以EVALSHA执行脚本。管道中无法就地退回到EVAL，响应为{@link JedisNoScriptException}时由调用者用{@link #eval(Jedis, List, List)}重新执行
+     */
+    Response<Object> evalsha(Pipeline pipeline, List<String> keys, List<String> args) {
+        return pipeline.evalsha(sha, keys, args);
+    }
+
+    Response<Object> evalsha(Pipeline pipeline, int keyCount, byte[]... params) {
+        return pipeline.evalsha(encodedSha, keyCount, params);
+    }
+
+    private static String sha1(String script) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = digest.digest(script.getBytes(StandardCharsets.UTF_8));
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+}
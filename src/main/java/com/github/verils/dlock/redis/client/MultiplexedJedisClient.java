@@ -0,0 +1,419 @@
+package com.github.verils.dlock.redis.client;
+
+import com.github.verils.dlock.metrics.LockMetrics;
+import com.github.verils.dlock.redis.BinaryRedisClient;
+import com.github.verils.dlock.redis.RemoteLock;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.util.SafeEncoder;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 不使用连接池的{@link BinaryRedisClient}，所有线程共用一个Redis连接。调用者的命令进入队列，由一个调度线程成批地以管道发送，
+ * 并发越高每批的命令越多，整批命令只需一次往返。连接断开时该批次的调用全部失败，下一批命令重新建立连接
+ * <p>
+ * 只支持基本的锁命令，不支持释放通知，等待锁的线程按照退避策略休眠。一条慢命令会拖慢同一批次以及之后的所有命令
+ */
+@Slf4j
+public class MultiplexedJedisClient implements BinaryRedisClient, Closeable {
+
+    private static final String STATUS_OK = "OK";
+
+    private static final String NX = "NX";
+
+    private static final String PX = "PX";
+
+    private static final byte[] BINARY_NX = SafeEncoder.encode(NX);
+
+    private static final byte[] BINARY_PX = SafeEncoder.encode(PX);
+
+    /**
+     * 一次管道发送的最大命令数
+     */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final Supplier<Jedis> connectionFactory;
+
+    private final LockMetrics metrics;
+
+    private final BlockingQueue<Call<?>> queue = new LinkedBlockingQueue<>();
+
+    private final Thread dispatcher;
+
+    private volatile boolean closed;
+
+    /**
+     * 所有调用共用的连接，只由调度线程访问，断开后为null
+     */
+    private Jedis connection;
+
+    public MultiplexedJedisClient(String host, int port) {
+        this(() -> new Jedis(host, port), LockMetrics.NOOP);
+    }
+
+    /**
+     * @param connectionFactory Creates the connection shared by all callers, and creates it again after it is broken.
+     *                          Give it a socket timeout, a stalled connection holds up every caller until it times out
+     * @param metrics           Receives the time every operation spends queued and in flight, named after the method of
+     *                          this client
+     */
+    public MultiplexedJedisClient(Supplier<Jedis> connectionFactory, LockMetrics metrics) {
+        this.connectionFactory = connectionFactory;
+        this.metrics = metrics;
+        this.dispatcher = new Thread(this::dispatch, "dlock-multiplexer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, int expireInSeconds) {
+        return tryAcquire(key, value, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, Duration lease) {
+        int leaseMillis = millisOf(lease);
+        String status = execute("tryAcquire", -1, pipeline -> pipeline.set(key, value, NX, PX, leaseMillis), null);
+        return STATUS_OK.equals(status);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, int expireInSeconds) {
+        return tryAcquireOrTtl(key, value, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease) {
+        return tryAcquireOrTtl(key, value, lease, -1);
+    }
+
+    /**
+     * {@code timeout}包括命令在队列中等待的时间。超时的命令仍可能随后被发送
+     */
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease, Duration timeout) {
+        return tryAcquireOrTtl(key, value, lease, timeout.toNanos());
+    }
+
+    private long tryAcquireOrTtl(String key, String value, Duration lease, long timeoutNanos) {
+        List<String> keys = Collections.singletonList(key);
+        List<String> args = Arrays.asList(value, String.valueOf(millisOf(lease)));
+        return (Long) execute("tryAcquireOrTtl", timeoutNanos,
+                pipeline -> JedisClient.ACQUIRE_OR_TTL_SCRIPT.evalsha(pipeline, keys, args),
+                jedis -> JedisClient.ACQUIRE_OR_TTL_SCRIPT.eval(jedis, keys, args));
+    }
+
+    @Override
+    public void expire(String key, int expireInSeconds) {
+        expire(key, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    public void expire(String key, Duration lease) {
+        long leaseMillis = millisOf(lease);
+        execute("expire", -1, pipeline -> pipeline.pexpire(key, leaseMillis), null);
+    }
+
+    @Override
+    public String getLock(String key) {
+        return execute("getLock", -1, pipeline -> pipeline.get(key), null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RemoteLock inspect(String key) {
+        List<String> keys = Collections.singletonList(key);
+        List<Object> result = (List<Object>) execute("inspect", -1,
+                pipeline -> JedisClient.INSPECT_SCRIPT.evalsha(pipeline, keys, Collections.emptyList()),
+                jedis -> JedisClient.INSPECT_SCRIPT.eval(jedis, keys, Collections.emptyList()));
+        if (result == null) {
+            return null;
+        }
+        return new RemoteLock((String) result.get(0), (Long) result.get(1));
+    }
+
+    @Override
+    public void release(String key) {
+        execute("release", -1, pipeline -> pipeline.del(key), null);
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        List<String> keys = Collections.singletonList(key);
+        List<String> args = Collections.singletonList(value);
+        Object result = execute("release", -1,
+                pipeline -> JedisClient.RELEASE_SCRIPT.evalsha(pipeline, keys, args),
+                jedis -> JedisClient.RELEASE_SCRIPT.eval(jedis, keys, args));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    @Override
+    public Set<String> renew(Map<String, String> locks, int expireInSeconds) {
+        return renew(locks, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> renew(Map<String, String> locks, Duration lease) {
+        if (locks.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<String> keys = new ArrayList<>(locks.size());
+        List<String> args = new ArrayList<>(locks.size() + 1);
+        args.add(String.valueOf(millisOf(lease)));
+        for (Map.Entry<String, String> lock : locks.entrySet()) {
+            keys.add(lock.getKey());
+            args.add(lock.getValue());
+        }
+        List<String> renewed = (List<String>) execute("renew", -1,
+                pipeline -> JedisClient.RENEW_SCRIPT.evalsha(pipeline, keys, args),
+                jedis -> JedisClient.RENEW_SCRIPT.eval(jedis, keys, args));
+        return new HashSet<>(renewed);
+    }
+
+    @Override
+    public boolean tryAcquire(byte[] key, byte[] value, Duration lease) {
+        int leaseMillis = millisOf(lease);
+        String status = execute("tryAcquire", -1, pipeline -> pipeline.set(key, value, BINARY_NX, BINARY_PX, leaseMillis), null);
+        return STATUS_OK.equals(status);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease) {
+        return tryAcquireOrTtl(key, value, lease, -1);
+    }
+
+    /**
+     * 超时返回时命令可能还在队列中，键和值会被复制，调用者随后改写它们不会影响已提交的命令
+     */
+    @Override
+    public long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease, Duration timeout) {
+        return tryAcquireOrTtl(key.clone(), value.clone(), lease, timeout.toNanos());
+    }
+
+    private long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease, long timeoutNanos) {
+        byte[] leaseMillis = Protocol.toByteArray(millisOf(lease));
+        return (Long) execute("tryAcquireOrTtl", timeoutNanos,
+                pipeline -> JedisClient.ACQUIRE_OR_TTL_SCRIPT.evalsha(pipeline, 1, key, value, leaseMillis),
+                jedis -> JedisClient.ACQUIRE_OR_TTL_SCRIPT.eval(jedis, 1, key, value, leaseMillis));
+    }
+
+    @Override
+    public void expire(byte[] key, Duration lease) {
+        long leaseMillis = millisOf(lease);
+        execute("expire", -1, pipeline -> pipeline.pexpire(key, leaseMillis), null);
+    }
+
+    @Override
+    public byte[] getLock(byte[] key) {
+        return execute("getLock", -1, pipeline -> pipeline.get(key), null);
+    }
+
+    @Override
+    public boolean release(byte[] key, byte[] value) {
+        Object result = execute("release", -1,
+                pipeline -> JedisClient.RELEASE_SCRIPT.evalsha(pipeline, 1, key, value),
+                jedis -> JedisClient.RELEASE_SCRIPT.eval(jedis, 1, key, value));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    /**
+     * 停止调度线程并断开连接，尚未发送的命令以{@link JedisConnectionException}失败
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+    }
+
+    /**
+     * 租约换算为毫秒，至少为1毫秒，{@code PX 0}会被Redis拒绝
+     */
+    private static int millisOf(Duration lease) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, lease.toMillis()));
+    }
+
+    /**
+     * 提交命令并等待结果
+     *
+     * @param name         操作名称，随耗时一起交给{@link LockMetrics}
+     * @param timeoutNanos 最长的等待时间，小于0表示一直等待到命令完成
+     * @param pipelined    在管道中发送命令
+     * @param direct       脚本不在Redis的脚本缓存中时，由调度线程直接执行命令，不执行脚本的命令为null
+     */
+    private <T> T execute(String name, long timeoutNanos, Function<Pipeline, Response<T>> pipelined, Function<Jedis, T> direct) {
+        Call<T> call = new Call<>(name, pipelined, direct);
+        if (closed) {
+            throw new JedisConnectionException("Client is closed");
+        }
+        queue.add(call);
+        if (closed && queue.remove(call)) {
+            throw new JedisConnectionException("Client is closed");
+        }
+        return call.await(timeoutNanos);
+    }
+
+    /**
+     * 调度线程的主循环。线程因意外的错误退出时同样关闭客户端，使正在发送和排队的调用失败，而不是让它们永远等待
+     */
+    private void dispatch() {
+        List<Call<?>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (!closed) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                send(batch);
+                batch.clear();
+            }
+        } finally {
+            closed = true;
+            disconnect();
+            JedisConnectionException e = new JedisConnectionException("Client is closed");
+            for (Call<?> call : batch) {
+                call.fail(e);
+            }
+            Call<?> call;
+            while ((call = queue.poll()) != null) {
+                call.fail(e);
+            }
+        }
+    }
+
+    /**
+     * 以管道发送一批命令并分发结果。发送或读取时出错，连接的状态无法确定，断开连接并使整批尚未完成的调用失败；
+     * 分发结果时只有连接错误会波及其他调用
+     */
+    private void send(List<Call<?>> batch) {
+        try {
+            if (connection == null) {
+                connection = connectionFactory.get();
+            }
+            Pipeline pipeline = connection.pipelined();
+            for (Call<?> call : batch) {
+                call.send(pipeline);
+            }
+            pipeline.sync();
+            for (Call<?> call : batch) {
+                call.complete(connection);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to execute {} commands on the multiplexed connection", batch.size(), e);
+            disconnect();
+            for (Call<?> call : batch) {
+                call.fail(e);
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (RuntimeException e) {
+                log.debug("Failed to close the multiplexed connection", e);
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * 一次等待结果的调用
+     */
+    private class Call<T> {
+
+        private final String name;
+        private final Function<Pipeline, Response<T>> pipelined;
+        private final Function<Jedis, T> direct;
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long queuedAt = System.nanoTime();
+
+        private Response<T> response;
+
+        private Call(String name, Function<Pipeline, Response<T>> pipelined, Function<Jedis, T> direct) {
+            this.name = name;
+            this.pipelined = pipelined;
+            this.direct = direct;
+        }
+
+        private void send(Pipeline pipeline) {
+            response = pipelined.apply(pipeline);
+        }
+
+        /**
+         * 由调度线程在管道同步后调用。Redis返回的错误只使本次调用失败，重新执行脚本时的连接错误抛给调用者，由它断开连接
+         */
+        private void complete(Jedis jedis) {
+            T value;
+            try {
+                value = response.get();
+            } catch (JedisNoScriptException e) {
+                if (direct == null) {
+                    fail(e);
+                    return;
+                }
+                try {
+                    value = direct.apply(jedis);
+                } catch (JedisConnectionException ce) {
+                    throw ce;
+                } catch (RuntimeException re) {
+                    fail(re);
+                    return;
+                }
+            } catch (JedisDataException e) {
+                fail(e);
+                return;
+            }
+            if (result.complete(value)) {
+                metrics.commandCompleted(name, System.nanoTime() - queuedAt, true);
+            }
+        }
+
+        private void fail(RuntimeException e) {
+            if (result.completeExceptionally(e)) {
+                metrics.commandCompleted(name, System.nanoTime() - queuedAt, false);
+            }
+        }
+
+        private T await(long timeoutNanos) {
+            try {
+                return timeoutNanos < 0 ? result.join() : result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (CompletionException | ExecutionException e) {
+                throw (RuntimeException) e.getCause();
+            } catch (TimeoutException e) {
+                throw new JedisConnectionException("Timed out waiting to execute " + name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JedisConnectionException("Interrupted while waiting to execute " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package com.github.verils.dlock.redis.client;
+
+import com.github.verils.dlock.redis.BinaryRedisClient;
+import com.github.verils.dlock.redis.FairRedisClient;
+import com.github.verils.dlock.redis.ReadWriteRedisClient;
+import com.github.verils.dlock.redis.RedisClient;
+import com.github.verils.dlock.redis.RedisSession;
+import com.github.verils.dlock.redis.ReleaseSubscription;
+import com.github.verils.dlock.redis.RemoteLock;
+import com.github.verils.dlock.redis.SemaphoreRedisClient;
+import com.github.verils.dlock.redis.SessionRedisClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+/**
+ * 将锁的键按一致性哈希分散到多个Redis实例的{@link RedisClient}。每个分片在哈希环上有多个虚拟节点，键落在哈希环上顺时针方向的第一个虚拟节点所属的分片
+ * <p>
+ * 与Redis集群一样，键中包含哈希标签（第一个{@code {}与其后第一个{@code }}之间的非空内容）时只计算标签的哈希值，
+ * 标签相同的键总是在同一个分片上，多键操作仍然可以在一次脚本调用中原子性地完成。键不在同一个分片上时，多键操作退化为逐个执行
+ * <p>
+ * 分片按名称在哈希环上定位，与分片的先后顺序无关。增加或移除一个分片时，只有哈希环上相邻区间内的键会改变分片，约为全部键的{@code 1/N}。
+ * 改变分片的键上已经持有的锁仍然留在原来的分片上，直到被释放或者过期，期间新的持有者可能在新的分片上获取到同一个锁，
+ * 因此只能在这些键空闲时调整分片，或者调整后至少等待一个租约时间再使用这些键
+ * <p>
+ * 公平锁、读写锁与信号量的命令按锁的键路由，它们使用的其他键与锁的键在同一个分片上，分片不支持这些命令时抛出{@link UnsupportedOperationException}。
+ * 二进制命令在不支持二进制命令的分片上按UTF-8转换为字符串执行。{@link #openSession()}打开的会话在每个用到的分片上各打开一个会话，
+ * 分片不支持会话时直接访问分片
+ */
+public class ShardedRedisClient implements BinaryRedisClient, FairRedisClient, ReadWriteRedisClient, SemaphoreRedisClient,
+        SessionRedisClient {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+
+    /**
+     * 分片名称与对应的客户端，调整分片时整体替换
+     */
+    private volatile Map<String, RedisClient> shards;
+
+    /**
+     * 虚拟节点的哈希值与所属的分片，调整分片时整体替换
+     */
+    private volatile TreeMap<Long, RedisClient> ring;
+
+    /**
+     * Create a client distributing keys across {@code shards} with {@code 160} virtual nodes per shard.
+     *
+     * @param shards Clients of independent redis instances by shard name. The names place the shards on the hash ring,
+     *               so they must stay the same across restarts and processes
+     */
+    public ShardedRedisClient(Map<String, ? extends RedisClient> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param shards       Clients of independent redis instances by shard name. The names place the shards on the hash
+     *                     ring, so they must stay the same across restarts and processes
+     * @param virtualNodes Number of points every shard takes on the hash ring, more points spread keys more evenly
+     */
+    public ShardedRedisClient(Map<String, ? extends RedisClient> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        reshard(new LinkedHashMap<>(shards));
+    }
+
+    /**
+     * 会话使用的构造方法，会话的路由委托给{@code client}
+     */
+    private ShardedRedisClient(ShardedRedisClient client) {
+        this.virtualNodes = client.virtualNodes;
+        this.shards = client.shards;
+        this.ring = client.ring;
+    }
+
+    /**
+     * 增加一个分片，只有哈希环上落到新分片的键会改变分片
+     *
+     * @throws IllegalArgumentException 已存在同名的分片
+     */
+    public synchronized void addShard(String name, RedisClient shard) {
+        if (shards.containsKey(name)) {
+            throw new IllegalArgumentException("Shard " + name + " already exists");
+        }
+        Map<String, RedisClient> resharded = new LinkedHashMap<>(shards);
+        resharded.put(name, shard);
+        reshard(resharded);
+    }
+
+    /**
+     * 移除一个分片，只有原本在该分片上的键会改变分片
+     *
+     * @return 被移除的分片，不存在时为null
+     * @throws IllegalArgumentException 这是最后一个分片
+     */
+    public synchronized RedisClient removeShard(String name) {
+        if (!shards.containsKey(name)) {
+            return null;
+        }
+        if (shards.size() == 1) {
+            throw new IllegalArgumentException("Cannot remove the last shard");
+        }
+        Map<String, RedisClient> resharded = new LinkedHashMap<>(shards);
+        RedisClient removed = resharded.remove(name);
+        reshard(resharded);
+        return removed;
+    }
+
+    /**
+     * @return 分片名称与对应的客户端
+     */
+    public Map<String, RedisClient> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return 键所在的分片
+     */
+    public RedisClient shardOf(String key) {
+        TreeMap<Long, RedisClient> ring = this.ring;
+        Map.Entry<Long, RedisClient> entry = ring.ceilingEntry(hash(hashTag(key)));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, int expireInSeconds) {
+        return clientOf(key).tryAcquire(key, value, expireInSeconds);
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, Duration lease) {
+        return clientOf(key).tryAcquire(key, value, lease);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, int expireInSeconds) {
+        return clientOf(key).tryAcquireOrTtl(key, value, expireInSeconds);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease) {
+        return clientOf(key).tryAcquireOrTtl(key, value, lease);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease, Duration timeout) {
+        return clientOf(key).tryAcquireOrTtl(key, value, lease, timeout);
+    }
+
+    /**
+     * 所有的键在同一个分片上时由该分片原子性地获取，否则逐个获取
+     */
+    @Override
+    public int tryAcquireAll(List<String> keys, String value, int expireInSeconds) {
+        RedisClient shard = commonShardOf(keys);
+        if (shard != null) {
+            return shard.tryAcquireAll(keys, value, expireInSeconds);
+        }
+        return BinaryRedisClient.super.tryAcquireAll(keys, value, expireInSeconds);
+    }
+
+    /**
+     * 所有的键在同一个分片上时由该分片一次认领，否则逐个认领
+     */
+    @Override
+    public List<String> claim(List<String> keys, String value, int limit, int expireInSeconds) {
+        RedisClient shard = commonShardOf(keys);
+        if (shard != null) {
+            return shard.claim(keys, value, limit, expireInSeconds);
+        }
+        return BinaryRedisClient.super.claim(keys, value, limit, expireInSeconds);
+    }
+
+    @Override
+    public void expire(String key, int expireInSeconds) {
+        clientOf(key).expire(key, expireInSeconds);
+    }
+
+    @Override
+    public void expire(String key, Duration lease) {
+        clientOf(key).expire(key, lease);
+    }
+
+    @Override
+    public String getLock(String key) {
+        return clientOf(key).getLock(key);
+    }
+
+    @Override
+    public RemoteLock inspect(String key) {
+        return clientOf(key).inspect(key);
+    }
+
+    @Override
+    public void release(String key) {
+        clientOf(key).release(key);
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        return clientOf(key).release(key, value);
+    }
+
+    /**
+     * 按分片分组，每个分片一次调用
+     */
+    @Override
+    public boolean releaseAll(List<String> keys, String value) {
+        boolean released = true;
+        for (Map.Entry<RedisClient, List<String>> group : groupByShard(keys).entrySet()) {
+            released &= group.getKey().releaseAll(group.getValue(), value);
+        }
+        return released;
+    }
+
+    /**
+     * 按分片分组，每个分片一次调用
+     */
+    @Override
+    public Set<String> renew(Map<String, String> locks, int expireInSeconds) {
+        return renew(locks, (shard, group) -> shard.renew(group, expireInSeconds));
+    }
+
+    /**
+     * 按分片分组，每个分片一次调用
+     */
+    @Override
+    public Set<String> renew(Map<String, String> locks, Duration lease) {
+        return renew(locks, (shard, group) -> shard.renew(group, lease));
+    }
+
+    private Set<String> renew(Map<String, String> locks, BiFunction<RedisClient, Map<String, String>, Set<String>> renewal) {
+        Map<RedisClient, Map<String, String>> groups = new IdentityHashMap<>();
+        for (Map.Entry<String, String> lock : locks.entrySet()) {
+            groups.computeIfAbsent(clientOf(lock.getKey()), shard -> new LinkedHashMap<>()).put(lock.getKey(), lock.getValue());
+        }
+        if (groups.size() == 1) {
+            Map.Entry<RedisClient, Map<String, String>> group = groups.entrySet().iterator().next();
+            return renewal.apply(group.getKey(), group.getValue());
+        }
+        Set<String> renewed = new HashSet<>();
+        for (Map.Entry<RedisClient, Map<String, String>> group : groups.entrySet()) {
+            renewed.addAll(renewal.apply(group.getKey(), group.getValue()));
+        }
+        return renewed;
+    }
+
+    @Override
+    public void awaitRelease(String key, long timeoutMillis) throws InterruptedException {
+        clientOf(key).awaitRelease(key, timeoutMillis);
+    }
+
+    @Override
+    public ReleaseSubscription subscribeRelease(String key) throws InterruptedException {
+        return clientOf(key).subscribeRelease(key);
+    }
+
+    @Override
+    public boolean tryAcquire(byte[] key, byte[] value, Duration lease) {
+        RedisClient shard = clientOf(key);
+        if (shard instanceof BinaryRedisClient) {
+            return ((BinaryRedisClient) shard).tryAcquire(key, value, lease);
+        }
+        return shard.tryAcquire(decode(key), decode(value), lease);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease) {
+        RedisClient shard = clientOf(key);
+        if (shard instanceof BinaryRedisClient) {
+            return ((BinaryRedisClient) shard).tryAcquireOrTtl(key, value, lease);
+        }
+        return shard.tryAcquireOrTtl(decode(key), decode(value), lease);
+    }
+
+    @Override
+    public long tryAcquireOrTtl(byte[] key, byte[] value, Duration lease, Duration timeout) {
+        RedisClient shard = clientOf(key);
+        if (shard instanceof BinaryRedisClient) {
+            return ((BinaryRedisClient) shard).tryAcquireOrTtl(key, value, lease, timeout);
+        }
+        return shard.tryAcquireOrTtl(decode(key), decode(value), lease, timeout);
+    }
+
+    @Override
+    public void expire(byte[] key, Duration lease) {
+        RedisClient shard = clientOf(key);
+        if (shard instanceof BinaryRedisClient) {
+            ((BinaryRedisClient) shard).expire(key, lease);
+        } else {
+            shard.expire(decode(key), lease);
+        }
+    }
+
+    @Override
+    public byte[] getLock(byte[] key) {
+        RedisClient shard = clientOf(key);
+        if (shard instanceof BinaryRedisClient) {
+            return ((BinaryRedisClient) shard).getLock(key);
+        }
+        String value = shard.getLock(decode(key));
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public boolean release(byte[] key, byte[] value) {
+        RedisClient shard = clientOf(key);
+        if (shard instanceof BinaryRedisClient) {
+            return ((BinaryRedisClient) shard).release(key, value);
+        }
+        return shard.release(decode(key), decode(value));
+    }
+
+    @Override
+    public long tryAcquireFair(String key, String value, int expireInSeconds, long heartbeatMillis) {
+        return clientOf(key, FairRedisClient.class).tryAcquireFair(key, value, expireInSeconds, heartbeatMillis);
+    }
+
+    @Override
+    public boolean releaseFair(String key, String value) {
+        return clientOf(key, FairRedisClient.class).releaseFair(key, value);
+    }
+
+    @Override
+    public void cancelFair(String key, String value) {
+        clientOf(key, FairRedisClient.class).cancelFair(key, value);
+    }
+
+    /**
+     * 按锁的键而不是通知频道的名称路由，通知由锁所在的分片发布
+     */
+    @Override
+    public void awaitTurn(String key, String value, long timeoutMillis) throws InterruptedException {
+        clientOf(key, FairRedisClient.class).awaitTurn(key, value, timeoutMillis);
+    }
+
+    /**
+     * 按锁的键而不是通知频道的名称路由，通知由锁所在的分片发布
+     */
+    @Override
+    public ReleaseSubscription subscribeTurn(String key, String value) throws InterruptedException {
+        return clientOf(key, FairRedisClient.class).subscribeTurn(key, value);
+    }
+
+    @Override
+    public long tryAcquireRead(String key, String value, int expireInSeconds) {
+        return clientOf(key, ReadWriteRedisClient.class).tryAcquireRead(key, value, expireInSeconds);
+    }
+
+    @Override
+    public long tryAcquireWrite(String key, String value, int expireInSeconds) {
+        return clientOf(key, ReadWriteRedisClient.class).tryAcquireWrite(key, value, expireInSeconds);
+    }
+
+    @Override
+    public boolean renewRead(String key, String value, int expireInSeconds) {
+        return clientOf(key, ReadWriteRedisClient.class).renewRead(key, value, expireInSeconds);
+    }
+
+    @Override
+    public boolean renewWrite(String key, String value, int expireInSeconds) {
+        return clientOf(key, ReadWriteRedisClient.class).renewWrite(key, value, expireInSeconds);
+    }
+
+    @Override
+    public boolean releaseRead(String key, String value) {
+        return clientOf(key, ReadWriteRedisClient.class).releaseRead(key, value);
+    }
+
+    @Override
+    public boolean releaseWrite(String key, String value) {
+        return clientOf(key, ReadWriteRedisClient.class).releaseWrite(key, value);
+    }
+
+    @Override
+    public List<String> tryAcquirePermits(String key, int permits, String prefix, int min, int max, int expireInSeconds) {
+        return clientOf(key, SemaphoreRedisClient.class).tryAcquirePermits(key, permits, prefix, min, max, expireInSeconds);
+    }
+
+    @Override
+    public int releasePermits(String key, List<String> permitNames) {
+        return clientOf(key, SemaphoreRedisClient.class).releasePermits(key, permitNames);
+    }
+
+    @Override
+    public RedisSession openSession() {
+        return new ShardedSession(this);
+    }
+
+    /**
+     * @return 执行{@code key}上的命令所使用的客户端，会话中为分片上的会话
+     */
+    RedisClient clientOf(String key) {
+        return shardOf(key);
+    }
+
+    private RedisClient clientOf(byte[] key) {
+        return clientOf(decode(key));
+    }
+
+    /**
+     * @throws UnsupportedOperationException 键所在的分片不支持{@code type}的命令
+     */
+    private <T extends RedisClient> T clientOf(String key, Class<T> type) {
+        RedisClient client = clientOf(key);
+        if (!type.isInstance(client)) {
+            throw new UnsupportedOperationException("Shard of " + key + " is not a " + type.getSimpleName());
+        }
+        return type.cast(client);
+    }
+
+    private static String decode(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return 所有的键共同所在的分片，键分布在多个分片上时为null
+     */
+    private RedisClient commonShardOf(List<String> keys) {
+        RedisClient common = null;
+        for (String key : keys) {
+            RedisClient shard = clientOf(key);
+            if (common != null && shard != common) {
+                return null;
+            }
+            common = shard;
+        }
+        return common;
+    }
+
+    private Map<RedisClient, List<String>> groupByShard(List<String> keys) {
+        Map<RedisClient, List<String>> groups = new IdentityHashMap<>();
+        for (String key : keys) {
+            groups.computeIfAbsent(clientOf(key), shard -> new ArrayList<>()).add(key);
+        }
+        return groups;
+    }
+
+    private void reshard(Map<String, RedisClient> shards) {
+        TreeMap<Long, RedisClient> ring = new TreeMap<>();
+        for (Map.Entry<String, RedisClient> shard : shards.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard.getKey() + "#" + i), shard.getValue());
+            }
+        }
+        this.shards = Collections.unmodifiableMap(shards);
+        this.ring = ring;
+    }
+
+    /**
+     * 按照Redis集群的规则取出键中的哈希标签，没有标签时返回键本身
+     */
+    static String hashTag(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                return key.substring(start + 1, end);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * 64位FNV-1a哈希，再经过MurmurHash3的混合函数使虚拟节点在哈希环上分布均匀
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 在每个用到的分片上各打开一个会话，路由与分片的调整都委托给打开它的客户端
+     */
+    private static class ShardedSession extends ShardedRedisClient implements RedisSession {
+
+        private final ShardedRedisClient client;
+
+        /**
+         * 分片与在该分片上打开的会话，关闭后仍然可以继续使用
+         */
+        private final Map<RedisClient, RedisSession> sessions = new IdentityHashMap<>();
+
+        private ShardedSession(ShardedRedisClient client) {
+            super(client);
+            this.client = client;
+        }
+
+        @Override
+        public void addShard(String name, RedisClient shard) {
+            client.addShard(name, shard);
+        }
+
+        @Override
+        public RedisClient removeShard(String name) {
+            return client.removeShard(name);
+        }
+
+        @Override
+        public Map<String, RedisClient> getShards() {
+            return client.getShards();
+        }
+
+        @Override
+        public RedisClient shardOf(String key) {
+            return client.shardOf(key);
+        }
+
+        @Override
+        RedisClient clientOf(String key) {
+            RedisClient shard = client.shardOf(key);
+            if (!(shard instanceof SessionRedisClient)) {
+                return shard;
+            }
+            return sessions.computeIfAbsent(shard, opened -> ((SessionRedisClient) opened).openSession());
+        }
+
+        @Override
+        public RedisSession openSession() {
+            return client.openSession();
+        }
+
+        @Override
+        public void close() {
+            for (RedisSession session : sessions.values()) {
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.verils.dlock;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * 锁实现向JDK Flight Recorder提交事件的入口。事件都在{@code dlock}分类下，获取锁的事件默认只记录等待超过20毫秒的，
+ * 与{@code jdk.JavaMonitorEnter}一致，可以在记录配置中调整。本地线程在锁实例上排队的时间同时体现在{@code jdk.ThreadPark}事件中
+ */
+public final class LockEvents {
+
+    private static final EventType ACQUIRED = EventType.getEventType(Acquired.class);
+
+    private LockEvents() {
+    }
+
+    public static Object waiting() {
+        if (!ACQUIRED.isEnabled()) {
+            return null;
+        }
+        Acquired event = new Acquired();
+        event.begin();
+        return event;
+    }
+
+    public static void acquired(Object waiting, Class<?> lockClass, String key, int retries) {
+        if (waiting == null) {
+            return;
+        }
+        Acquired event = (Acquired) waiting;
+        event.end();
+        if (event.shouldCommit()) {
+            event.lockClass = lockClass;
+            event.key = key;
+            event.retries = retries;
+            event.commit();
+        }
+    }
+
+    public static void contended(Class<?> lockClass, String key) {
+        Contended event = new Contended();
+        if (event.shouldCommit()) {
+            event.lockClass = lockClass;
+            event.key = key;
+            event.commit();
+        }
+    }
+
+    public static void leaseRenewed(Class<?> lockClass, String key, long leaseMillis) {
+        LeaseRenewed event = new LeaseRenewed();
+        if (event.shouldCommit()) {
+            event.lockClass = lockClass;
+            event.key = key;
+            event.lease = leaseMillis;
+            event.commit();
+        }
+    }
+
+    public static void leaseLost(Class<?> lockClass, String key, String detectedBy) {
+        LeaseLost event = new LeaseLost();
+        if (event.shouldCommit()) {
+            event.lockClass = lockClass;
+            event.key = key;
+            event.detectedBy = detectedBy;
+            event.commit();
+        }
+    }
+
+    @Name("com.github.verils.dlock.LockAcquired")
+    @Label("Lock Acquired")
+    @Category("dlock")
+    @Description("A thread acquired a lock, the duration is the time spent waiting for it")
+    @Threshold("20 ms")
+    static class Acquired extends Event {
+
+        @Label("Lock Class")
+        Class<?> lockClass;
+
+        @Label("Key")
+        String key;
+
+        @Label("Retries")
+        int retries;
+    }
+
+    @Name("com.github.verils.dlock.LockContended")
+    @Label("Lock Contended")
+    @Category("dlock")
+    @Description("The first attempt to acquire a lock failed because it was held by another thread or process")
+    static class Contended extends Event {
+
+        @Label("Lock Class")
+        Class<?> lockClass;
+
+        @Label("Key")
+        String key;
+    }
+
+    @Name("com.github.verils.dlock.LeaseRenewed")
+    @Label("Lease Renewed")
+    @Category("dlock")
+    @Description("The lease of a held lock was extended")
+    static class LeaseRenewed extends Event {
+
+        @Label("Lock Class")
+        Class<?> lockClass;
+
+        @Label("Key")
+        String key;
+
+        @Label("Lease")
+        @Timespan(Timespan.MILLISECONDS)
+        long lease;
+    }
+
+    @Name("com.github.verils.dlock.LeaseLost")
+    @Label("Lease Lost")
+    @Category("dlock")
+    @Description("A lock expired or was taken by another holder while it was held")
+    static class LeaseLost extends Event {
+
+        @Label("Lock Class")
+        Class<?> lockClass;
+
+        @Label("Key")
+        String key;
+
+        @Label("Detected By")
+        String detectedBy;
+    }
+}
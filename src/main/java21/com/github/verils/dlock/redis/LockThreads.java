@@ -0,0 +1,24 @@
+package com.github.verils.dlock.redis;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 执行阻塞的Redis调用所使用的线程。每次调用都在一个新的虚拟线程中执行，调度线程池中的平台线程不会被阻塞
+ */
+final class LockThreads {
+
+    private static final Executor VIRTUAL_THREADS = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dlock-virtual-", 0).factory());
+
+    private LockThreads() {
+    }
+
+    static Executor blockingExecutor() {
+        return VIRTUAL_THREADS;
+    }
+
+    static Executor parallelExecutor() {
+        return VIRTUAL_THREADS;
+    }
+}
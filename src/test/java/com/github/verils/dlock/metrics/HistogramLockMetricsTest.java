@@ -0,0 +1,95 @@
+package com.github.verils.dlock.metrics;
+
+import com.github.verils.dlock.redis.BackoffStrategy;
+import com.github.verils.dlock.redis.InMemoryRedisClient;
+import com.github.verils.dlock.redis.RedisReentrantLock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HistogramLockMetricsTest {
+
+    private static final String TEST_LOCK_KEY = "test:metrics:1";
+    private static final Duration LEASE = Duration.ofSeconds(5);
+
+    private InMemoryRedisClient redisClient;
+
+    private HistogramLockMetrics metrics;
+
+    private RedisReentrantLock redisLock;
+
+    @Before
+    public void setUp() {
+        redisClient = new InMemoryRedisClient();
+        metrics = new HistogramLockMetrics();
+        redisLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, LEASE, BackoffStrategy.fixed(5), null, 0, metrics);
+    }
+
+    @Test
+    public void keyPattern() {
+        assertEquals("order:*:lock", HistogramLockMetrics.patternOf("order:1024:lock"));
+        assertEquals("user:*", HistogramLockMetrics.patternOf("user:a1b2"));
+        assertEquals("*:*", HistogramLockMetrics.patternOf("1:2"));
+        assertEquals("amazing:lock", HistogramLockMetrics.patternOf("amazing:lock"));
+        assertEquals("lock:", HistogramLockMetrics.patternOf("lock:"));
+    }
+
+    @Test
+    public void recordWaitAndHoldTime() throws InterruptedException {
+        redisLock.lock();
+        redisLock.lock();
+        TimeUnit.MILLISECONDS.sleep(20);
+        redisLock.unlock();
+        redisLock.unlock();
+
+        HistogramLockMetrics.KeyStats stats = metrics.getKeys().get("test:metrics:*");
+        assertEquals(1, stats.getWaitTime().snapshot().getCount());
+        assertEquals(1, stats.getHoldTime().snapshot().getCount());
+        assertTrue(stats.getHoldTime().snapshot().getMax(TimeUnit.MILLISECONDS) >= 20);
+        assertEquals(0, stats.getRetries());
+    }
+
+    @Test
+    public void recordRetries() throws ExecutionException, InterruptedException {
+        redisClient.tryAcquire(TEST_LOCK_KEY, "other", LEASE);
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            redisLock.lock();
+            redisLock.unlock();
+        });
+        TimeUnit.MILLISECONDS.sleep(50);
+        redisClient.release(TEST_LOCK_KEY, "other");
+        future.get();
+
+        HistogramLockMetrics.KeyStats stats = metrics.getKeys().get("test:metrics:*");
+        assertTrue(stats.getRetries() > 0);
+        assertTrue(stats.getWaitTime().snapshot().getMax(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    @Test
+    public void recordFailedTryLocks() {
+        redisClient.tryAcquire(TEST_LOCK_KEY, "other", LEASE);
+
+        assertFalse(redisLock.tryLock());
+        assertFalse(redisLock.tryLock());
+
+        HistogramLockMetrics.KeyStats stats = metrics.getKeys().get("test:metrics:*");
+        assertEquals(2, stats.getFailedTryLocks());
+        assertEquals(0, stats.getWaitTime().snapshot().getCount());
+    }
+
+    @Test
+    public void recordCommands() {
+        metrics.commandCompleted("tryAcquire", 1000, true);
+        metrics.commandCompleted("tryAcquire", 2000, false);
+
+        HistogramLockMetrics.CommandStats stats = metrics.getCommands().get("tryAcquire");
+        assertEquals(2, stats.getRoundTrip().snapshot().getCount());
+        assertEquals(1, stats.getFailures());
+    }
+}
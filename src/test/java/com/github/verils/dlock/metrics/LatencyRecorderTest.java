@@ -0,0 +1,70 @@
+package com.github.verils.dlock.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (long value = 0; value < 1_000_000; value++) {
+            int index = LatencyRecorder.indexOf(value);
+            assertTrue(value <= LatencyRecorder.highestValueOf(index));
+            assertTrue(index == 0 || value > LatencyRecorder.highestValueOf(index - 1));
+        }
+    }
+
+    @Test
+    public void percentilesWithinPrecision() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (long micros = 1; micros <= 10000; micros++) {
+            recorder.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(10000, snapshot.getMax(TimeUnit.MICROSECONDS));
+        assertEquals(5000.5, snapshot.getMean(TimeUnit.MICROSECONDS), 0.01);
+        assertWithin(5000, snapshot.getValueAtPercentile(50, TimeUnit.MICROSECONDS));
+        assertWithin(9900, snapshot.getValueAtPercentile(99, TimeUnit.MICROSECONDS));
+        assertEquals(10000, snapshot.getValueAtPercentile(100, TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyRecorder.Snapshot snapshot = new LatencyRecorder().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99, TimeUnit.NANOSECONDS));
+        assertEquals(0, snapshot.getMean(TimeUnit.NANOSECONDS), 0);
+    }
+
+    @Test
+    public void recordConcurrently() throws ExecutionException, InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    recorder.record(j);
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        assertEquals(80000, recorder.snapshot().getCount());
+        assertEquals(9999, recorder.snapshot().getMax(TimeUnit.NANOSECONDS));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected);
+        assertTrue(actual <= expected + expected / 32);
+    }
+}
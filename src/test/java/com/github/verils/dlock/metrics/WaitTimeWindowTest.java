@@ -0,0 +1,58 @@
+package com.github.verils.dlock.metrics;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WaitTimeWindowTest {
+
+    @Test
+    public void rankByTotalWaitTime() {
+        WaitTimeWindow window = new WaitTimeWindow();
+        window.lockAcquired("lock:a", TimeUnit.MILLISECONDS.toNanos(30), 0);
+        window.lockAcquired("lock:b", TimeUnit.MILLISECONDS.toNanos(50), 0);
+        window.lockAcquired("lock:a", TimeUnit.MILLISECONDS.toNanos(40), 0);
+        window.lockAcquired("lock:c", TimeUnit.MILLISECONDS.toNanos(10), 0);
+
+        List<WaitTimeWindow.HotKey> top = window.top(2);
+        assertEquals(2, top.size());
+        assertEquals("lock:a", top.get(0).getKey());
+        assertEquals(70, top.get(0).getWaitTime(TimeUnit.MILLISECONDS));
+        assertEquals(40, top.get(0).getMaxWaitTime(TimeUnit.MILLISECONDS));
+        assertEquals(2, top.get(0).getAcquisitions());
+        assertEquals("lock:b", top.get(1).getKey());
+    }
+
+    @Test
+    public void forgetOutsideWindow() throws InterruptedException {
+        WaitTimeWindow window = new WaitTimeWindow(Duration.ofMillis(200), 4);
+        window.lockAcquired("lock:a", 1000, 0);
+        assertEquals(1, window.top(10).size());
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertTrue(window.top(10).isEmpty());
+
+        window.lockAcquired("lock:b", 1000, 0);
+        assertEquals("lock:b", window.top(10).get(0).getKey());
+    }
+
+    @Test
+    public void replaceColdestKeyOverLimit() {
+        WaitTimeWindow window = new WaitTimeWindow(Duration.ofMinutes(1), 6, 2);
+        window.lockAcquired("lock:a", TimeUnit.MILLISECONDS.toNanos(100), 0);
+        window.lockAcquired("lock:b", TimeUnit.MILLISECONDS.toNanos(50), 0);
+        window.lockAcquired("lock:c", TimeUnit.MILLISECONDS.toNanos(10), 0);
+
+        List<WaitTimeWindow.HotKey> top = window.top(10);
+        assertEquals(2, top.size());
+        assertEquals("lock:a", top.get(0).getKey());
+        assertEquals("lock:c", top.get(1).getKey());
+        assertEquals(60, top.get(1).getWaitTime(TimeUnit.MILLISECONDS));
+        assertEquals(2, top.get(1).getAcquisitions());
+    }
+}
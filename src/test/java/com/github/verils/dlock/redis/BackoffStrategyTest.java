@@ -0,0 +1,69 @@
+package com.github.verils.dlock.redis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackoffStrategyTest {
+
+    @Test
+    public void fixed() {
+        BackoffStrategy backoff = BackoffStrategy.fixed(30);
+        assertEquals(30, backoff.nextDelay(1, 0, -1));
+        assertEquals(30, backoff.nextDelay(10, 30, 1000));
+    }
+
+    @Test
+    public void exponential() {
+        BackoffStrategy backoff = BackoffStrategy.exponential(10, 100);
+        assertEquals(10, backoff.nextDelay(1, 0, -1));
+        assertEquals(20, backoff.nextDelay(2, 10, -1));
+        assertEquals(80, backoff.nextDelay(4, 40, -1));
+        assertEquals(100, backoff.nextDelay(5, 80, -1));
+        assertEquals(100, backoff.nextDelay(100, 100, -1));
+    }
+
+    @Test
+    public void decorrelatedJitter() {
+        BackoffStrategy backoff = BackoffStrategy.decorrelatedJitter(10, 100);
+        long delay = 0;
+        for (int attempt = 1; attempt <= 100; attempt++) {
+            long next = backoff.nextDelay(attempt, delay, -1);
+            assertTrue(next >= 10);
+            assertTrue(next <= Math.min(100, Math.max(10, delay) * 3));
+            delay = next;
+        }
+    }
+
+    @Test
+    public void adaptiveBoundedByRemainingTtl() {
+        BackoffStrategy backoff = BackoffStrategy.adaptive(5, 1000);
+        for (int i = 0; i < 50; i++) {
+            backoff.acquired(3, 800);
+        }
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelay(1, 0, 40);
+            assertTrue(delay >= 20 && delay <= 40);
+        }
+    }
+
+    @Test
+    public void adaptiveLearnsFromWaits() {
+        AdaptiveBackoff backoff = (AdaptiveBackoff) BackoffStrategy.adaptive(5, 1000);
+        assertEquals(5, backoff.getEstimatedWait());
+
+        for (int i = 0; i < 100; i++) {
+            backoff.acquired(2, 200);
+        }
+        assertTrue(backoff.getEstimatedWait() > 150);
+
+        backoff.acquired(0, 0);
+        assertTrue(backoff.getEstimatedWait() > 150);
+
+        for (int i = 0; i < 100; i++) {
+            backoff.acquired(1, 10);
+        }
+        assertTrue(backoff.getEstimatedWait() < 50);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.verils.dlock.redis;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    @Test
+    public void openOnFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, Duration.ofSeconds(1), 1, 4, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        breaker.onSuccess(FAST);
+        breaker.onError(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void openOnSlowCallRate() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(1), 0.5, 2, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(SLOW);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onSuccess(SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void probeAfterOpenDuration() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, Duration.ofSeconds(1), 1, 1, Duration.ofSeconds(10), Duration.ofMillis(50));
+        breaker.onError(FAST);
+        assertFalse(breaker.tryAcquirePermission());
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void onlyProbeDecidesHalfOpen() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, Duration.ofSeconds(1), 1, 1, Duration.ofSeconds(10), Duration.ofMillis(50));
+        breaker.onError(FAST);
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertTrue(breaker.tryAcquirePermission());
+
+        // 熔断之前放行的慢调用在探测返回之前成功返回
+        Thread stale = new Thread(() -> breaker.onSuccess(FAST));
+        stale.start();
+        stale.join();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void forgetOutsideWindow() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, Duration.ofSeconds(1), 1, 2, Duration.ofMillis(200), Duration.ofMinutes(1));
+        breaker.onError(FAST);
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.Toilet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DistributedReadWriteLockTest {
+
+    private static final String TEST_LOCK_KEY = "test:rwlock";
+    private static final int EXPIRE_IN_SECONDS = 5;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private InMemoryRedisClient redisClient;
+
+    private DistributedReadWriteLock readWriteLock;
+
+    /**
+     * 模拟另一个进程中的读写锁
+     */
+    private DistributedReadWriteLock otherReadWriteLock;
+
+    @Before
+    public void setUp() {
+        redisClient = spy(new InMemoryRedisClient());
+        readWriteLock = new DistributedReadWriteLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS);
+        otherReadWriteLock = new DistributedReadWriteLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void testWriteLock() throws ExecutionException, InterruptedException {
+        Toilet toilet = Toilet.testReentrant(readWriteLock.writeLock(), 6, 20);
+        assertEquals(20, toilet.getCount());
+    }
+
+    @Test
+    public void localReadersShareRemoteLease() throws ExecutionException, InterruptedException {
+        int threads = 16;
+        CountDownLatch holding = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                Lock lock = readWriteLock.readLock();
+                lock.lock();
+                try {
+                    holding.countDown();
+                    holding.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    lock.unlock();
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        executor.shutdown();
+
+        verify(redisClient, times(1)).tryAcquireRead(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS));
+        verify(redisClient, times(1)).releaseRead(eq(TEST_LOCK_KEY), anyString());
+    }
+
+    @Test
+    public void readersExcludeWriter() {
+        readWriteLock.readLock().lock();
+
+        assertFalse(otherReadWriteLock.writeLock().tryLock());
+        assertTrue(otherReadWriteLock.readLock().tryLock());
+
+        readWriteLock.readLock().unlock();
+        assertFalse(otherReadWriteLock.writeLock().tryLock());
+
+        otherReadWriteLock.readLock().unlock();
+        assertTrue(otherReadWriteLock.writeLock().tryLock());
+        assertFalse(readWriteLock.readLock().tryLock());
+        assertFalse(readWriteLock.writeLock().tryLock());
+
+        otherReadWriteLock.writeLock().unlock();
+    }
+
+    @Test
+    public void writeLockDowngrade() {
+        readWriteLock.writeLock().lock();
+        readWriteLock.readLock().lock();
+        readWriteLock.writeLock().unlock();
+
+        assertFalse(otherReadWriteLock.writeLock().tryLock());
+        assertTrue(otherReadWriteLock.readLock().tryLock());
+
+        otherReadWriteLock.readLock().unlock();
+        readWriteLock.readLock().unlock();
+    }
+
+    @Test
+    public void tryWriteLockTimeout() throws InterruptedException {
+        otherReadWriteLock.readLock().lock();
+
+        long start = System.nanoTime();
+        assertFalse(readWriteLock.writeLock().tryLock(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        otherReadWriteLock.readLock().unlock();
+        assertTrue(readWriteLock.writeLock().tryLock(100, TimeUnit.MILLISECONDS));
+        readWriteLock.writeLock().unlock();
+    }
+
+    @Test
+    public void unlockExpired() throws InterruptedException {
+        DistributedReadWriteLock shortLease = new DistributedReadWriteLock(redisClient, TEST_LOCK_KEY, 1);
+        shortLease.writeLock().lock();
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertTrue(otherReadWriteLock.readLock().tryLock());
+
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Lock has expired or been acquired by others");
+
+        shortLease.writeLock().unlock();
+    }
+
+    @Test
+    public void unlockWithoutThreadLock() {
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Current thread is not holding lock");
+
+        readWriteLock.readLock().unlock();
+    }
+}
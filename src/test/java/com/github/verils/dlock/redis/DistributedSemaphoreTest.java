@@ -0,0 +1,146 @@
+package com.github.verils.dlock.redis;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DistributedSemaphoreTest {
+
+    private static final String TEST_SEMAPHORE_KEY = "test:semaphore";
+    private static final int PERMITS = 3;
+    private static final int EXPIRE_IN_SECONDS = 5;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private InMemoryRedisClient redisClient;
+
+    private DistributedSemaphore semaphore;
+
+    /**
+     * 模拟另一个进程中的信号量
+     */
+    private DistributedSemaphore otherSemaphore;
+
+    @Before
+    public void setUp() {
+        redisClient = spy(new InMemoryRedisClient());
+        semaphore = new DistributedSemaphore(redisClient, TEST_SEMAPHORE_KEY, PERMITS, EXPIRE_IN_SECONDS);
+        otherSemaphore = new DistributedSemaphore(redisClient, TEST_SEMAPHORE_KEY, PERMITS, EXPIRE_IN_SECONDS,
+                BackoffStrategy.fixed(5), 2);
+    }
+
+    @Test
+    public void limitConcurrency() throws ExecutionException, InterruptedException {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            DistributedSemaphore s = i % 2 == 0 ? semaphore : otherSemaphore;
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    s.acquire();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                try {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    TimeUnit.MILLISECONDS.sleep(5);
+                    completed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    concurrent.decrementAndGet();
+                    s.release();
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        executor.shutdown();
+
+        assertEquals(40, completed.get());
+        assertTrue(maxConcurrent.get() <= PERMITS);
+    }
+
+    @Test
+    public void tryAcquireAllOrNothing() {
+        assertTrue(semaphore.tryAcquire(2));
+        assertFalse(otherSemaphore.tryAcquire(2));
+        assertEquals(2, redisClient.getPermitCount(TEST_SEMAPHORE_KEY));
+
+        assertTrue(otherSemaphore.tryAcquire(1));
+        assertFalse(semaphore.tryAcquire());
+
+        semaphore.release(2);
+        assertEquals(1, redisClient.getPermitCount(TEST_SEMAPHORE_KEY));
+    }
+
+    @Test
+    public void tryAcquireTimeout() throws InterruptedException {
+        semaphore.acquire(PERMITS);
+
+        long start = System.nanoTime();
+        assertFalse(otherSemaphore.tryAcquire(1, 100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        semaphore.release();
+        assertTrue(otherSemaphore.tryAcquire(1, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void prefetchPermitsLocally() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            otherSemaphore.acquire();
+            otherSemaphore.release();
+        }
+        verify(redisClient, times(1)).tryAcquirePermits(eq(TEST_SEMAPHORE_KEY), eq(PERMITS), anyString(), eq(1), eq(2), eq(EXPIRE_IN_SECONDS));
+        verify(redisClient, never()).releasePermits(eq(TEST_SEMAPHORE_KEY), anyList());
+        assertEquals(2, otherSemaphore.getHeldPermits());
+        assertEquals(2, redisClient.getPermitCount(TEST_SEMAPHORE_KEY));
+
+        otherSemaphore.drainPermits();
+        assertEquals(0, otherSemaphore.getHeldPermits());
+        assertEquals(0, redisClient.getPermitCount(TEST_SEMAPHORE_KEY));
+    }
+
+    @Test
+    public void prefetchLimitedByAvailablePermits() throws InterruptedException {
+        semaphore.acquire(2);
+        otherSemaphore.acquire();
+
+        assertEquals(1, otherSemaphore.getHeldPermits());
+        verify(redisClient).tryAcquirePermits(eq(TEST_SEMAPHORE_KEY), eq(PERMITS), anyString(), eq(1), anyInt(), eq(EXPIRE_IN_SECONDS));
+    }
+
+    @Test
+    public void releaseMoreThanHeld() {
+        semaphore.tryAcquire();
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Cannot release 2 permits while holding 1");
+
+        semaphore.release(2);
+    }
+}
@@ -0,0 +1,299 @@
+package com.github.verils.dlock.redis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的{@link RedisClient}实现，模拟Redis中带过期时间的键，用于测试
+ */
+public class InMemoryRedisClient implements FairRedisClient, ReadWriteRedisClient, SemaphoreRedisClient {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 公平锁的等待队列，按入队顺序排列，值为心跳超时时间
+     */
+    private final Map<String, Map<String, Long>> queues = new HashMap<>();
+
+    /**
+     * 读写锁的哈希，字段值为租约截止时间
+     */
+    private final Map<String, Map<String, Long>> hashes = new HashMap<>();
+
+    /**
+     * 信号量的有序集合，成员的分数为租约截止时间
+     */
+    private final Map<String, Map<String, Long>> sortedSets = new HashMap<>();
+
+    @Override
+    public boolean tryAcquire(String key, String value, int expireInSeconds) {
+        return tryAcquireOrTtl(key, value, expireInSeconds) == 0;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String value, Duration lease) {
+        return tryAcquireOrTtl(key, value, lease) == 0;
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, int expireInSeconds) {
+        return tryAcquireOrTtl(key, value, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    public long tryAcquireOrTtl(String key, String value, Duration lease) {
+        Entry entry = new Entry(value, expiresAt(lease));
+        Entry current = entries.compute(key, (k, e) -> e == null || e.isExpired() ? entry : e);
+        if (current == entry) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(current.expiresAt - System.nanoTime()));
+    }
+
+    @Override
+    public void expire(String key, int expireInSeconds) {
+        expire(key, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    public void expire(String key, Duration lease) {
+        entries.computeIfPresent(key, (k, e) -> e.isExpired() ? null : new Entry(e.value, expiresAt(lease)));
+    }
+
+    @Override
+    public String getLock(String key) {
+        Entry entry = entries.get(key);
+        return entry == null || entry.isExpired() ? null : entry.value;
+    }
+
+    @Override
+    public RemoteLock inspect(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isExpired()) {
+            return null;
+        }
+        return new RemoteLock(entry.value, Math.max(1, TimeUnit.NANOSECONDS.toMillis(entry.expiresAt - System.nanoTime())));
+    }
+
+    @Override
+    public void release(String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        Entry entry = entries.get(key);
+        return entry != null && !entry.isExpired() && entry.value.equals(value) && entries.remove(key, entry);
+    }
+
+    @Override
+    public Set<String> renew(Map<String, String> locks, int expireInSeconds) {
+        return renew(locks, Duration.ofSeconds(expireInSeconds));
+    }
+
+    @Override
+    public Set<String> renew(Map<String, String> locks, Duration lease) {
+        Set<String> renewed = new HashSet<>();
+        for (Map.Entry<String, String> lock : locks.entrySet()) {
+            Entry entry = entries.computeIfPresent(lock.getKey(), (k, e) ->
+                    !e.isExpired() && e.value.equals(lock.getValue()) ? new Entry(e.value, expiresAt(lease)) : e);
+            if (entry != null && !entry.isExpired() && entry.value.equals(lock.getValue())) {
+                renewed.add(lock.getKey());
+            }
+        }
+        return renewed;
+    }
+
+    @Override
+    public synchronized long tryAcquireFair(String key, String value, int expireInSeconds, long heartbeatMillis) {
+        Map<String, Long> queue = queues.computeIfAbsent(key, k -> new LinkedHashMap<>());
+        long now = System.nanoTime();
+        queue.values().removeIf(deadline -> deadline - now <= 0);
+        Iterator<String> iterator = queue.keySet().iterator();
+        String head = iterator.hasNext() ? iterator.next() : null;
+        if (getLock(key) == null && (head == null || head.equals(value))) {
+            queue.remove(value);
+            entries.put(key, new Entry(value, expiresAt(expireInSeconds)));
+            return 0;
+        }
+        queue.put(value, now + TimeUnit.MILLISECONDS.toNanos(heartbeatMillis));
+        Entry entry = entries.get(key);
+        return entry == null ? 1 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(entry.expiresAt - now));
+    }
+
+    @Override
+    public synchronized boolean releaseFair(String key, String value) {
+        return release(key, value);
+    }
+
+    @Override
+    public synchronized void cancelFair(String key, String value) {
+        Map<String, Long> queue = queues.get(key);
+        if (queue != null) {
+            queue.remove(value);
+        }
+    }
+
+    /**
+     * @return 公平锁等待队列中心跳未超时的等待者数量
+     */
+    public synchronized int getQueueLength(String key) {
+        Map<String, Long> queue = queues.get(key);
+        if (queue == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        queue.values().removeIf(deadline -> deadline - now <= 0);
+        return queue.size();
+    }
+
+    @Override
+    public long tryAcquireRead(String key, String value, int expireInSeconds) {
+        return acquireField(key, "r:" + value, "w:" + value, expireInSeconds, false);
+    }
+
+    @Override
+    public long tryAcquireWrite(String key, String value, int expireInSeconds) {
+        return acquireField(key, "w:" + value, "r:" + value, expireInSeconds, true);
+    }
+
+    @Override
+    public boolean renewRead(String key, String value, int expireInSeconds) {
+        return renewField(key, "r:" + value, expireInSeconds);
+    }
+
+    @Override
+    public boolean renewWrite(String key, String value, int expireInSeconds) {
+        return renewField(key, "w:" + value, expireInSeconds);
+    }
+
+    @Override
+    public boolean releaseRead(String key, String value) {
+        return releaseField(key, "r:" + value);
+    }
+
+    @Override
+    public boolean releaseWrite(String key, String value) {
+        return releaseField(key, "w:" + value);
+    }
+
+    private synchronized long acquireField(String key, String field, String ownField, int expireInSeconds, boolean write) {
+        Map<String, Long> fields = hashes.computeIfAbsent(key, k -> new HashMap<>());
+        long now = System.nanoTime();
+        long wait = 0;
+        for (Iterator<Map.Entry<String, Long>> iterator = fields.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Long> entry = iterator.next();
+            long remaining = entry.getValue() - now;
+            if (remaining <= 0) {
+                iterator.remove();
+            } else if (!entry.getKey().equals(field) && !entry.getKey().equals(ownField)
+                    && (write || entry.getKey().startsWith("w:"))) {
+                wait = Math.max(wait, Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            }
+        }
+        if (wait > 0) {
+            return wait;
+        }
+        fields.put(field, expiresAt(expireInSeconds));
+        return 0;
+    }
+
+    private synchronized boolean renewField(String key, String field, int expireInSeconds) {
+        Map<String, Long> fields = hashes.get(key);
+        Long deadline = fields == null ? null : fields.get(field);
+        if (deadline == null || deadline - System.nanoTime() <= 0) {
+            return false;
+        }
+        fields.put(field, expiresAt(expireInSeconds));
+        return true;
+    }
+
+    private synchronized boolean releaseField(String key, String field) {
+        Map<String, Long> fields = hashes.get(key);
+        Long deadline = fields == null ? null : fields.remove(field);
+        if (fields != null && fields.isEmpty()) {
+            hashes.remove(key);
+        }
+        return deadline != null && deadline - System.nanoTime() > 0;
+    }
+
+    @Override
+    public synchronized List<String> tryAcquirePermits(String key, int permits, String prefix, int min, int max, int expireInSeconds) {
+        Map<String, Long> members = sortedSets.computeIfAbsent(key, k -> new HashMap<>());
+        long now = System.nanoTime();
+        members.values().removeIf(deadline -> deadline - now <= 0);
+        int available = permits - members.size();
+        List<String> acquired = new ArrayList<>();
+        if (available < min) {
+            return acquired;
+        }
+        for (int i = 1; i <= Math.min(available, max); i++) {
+            acquired.add(prefix + ":" + i);
+            members.put(prefix + ":" + i, expiresAt(expireInSeconds));
+        }
+        return acquired;
+    }
+
+    @Override
+    public synchronized int releasePermits(String key, List<String> permitNames) {
+        Map<String, Long> members = sortedSets.get(key);
+        if (members == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        members.values().removeIf(deadline -> deadline - now <= 0);
+        int released = 0;
+        for (String name : permitNames) {
+            if (members.remove(name) != null) {
+                released += 1;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * @return 信号量中未到期的许可数量
+     */
+    public synchronized int getPermitCount(String key) {
+        Map<String, Long> members = sortedSets.get(key);
+        if (members == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        members.values().removeIf(deadline -> deadline - now <= 0);
+        return members.size();
+    }
+
+    private static long expiresAt(int expireInSeconds) {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(expireInSeconds);
+    }
+
+    private static long expiresAt(Duration lease) {
+        return System.nanoTime() + lease.toNanos();
+    }
+
+    private static class Entry {
+
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+}
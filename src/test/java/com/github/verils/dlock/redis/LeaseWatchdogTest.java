@@ -0,0 +1,110 @@
+package com.github.verils.dlock.redis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LeaseWatchdogTest {
+
+    private static final String TEST_LOCK_KEY = "test:lock";
+    private static final int EXPIRE_IN_SECONDS = 60;
+    private static final Duration LEASE = Duration.ofSeconds(EXPIRE_IN_SECONDS);
+
+    private RedisClient redisClient;
+
+    private LeaseWatchdog watchdog;
+
+    private Lock redisLock;
+
+    private final AtomicReference<String> holder = new AtomicReference<>();
+
+    @Before
+    public void setUp() {
+        redisClient = mock(RedisClient.class);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenAnswer(invocation -> {
+            holder.set(invocation.getArgument(1));
+            return true;
+        });
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenReturn(true);
+
+        watchdog = new LeaseWatchdog(redisClient, EXPIRE_IN_SECONDS);
+        redisLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS, 30, watchdog);
+    }
+
+    @After
+    public void tearDown() {
+        watchdog.close();
+    }
+
+    @Test
+    public void renewHeldLock() {
+        when(redisClient.renew(anyMap(), eq(LEASE))).thenReturn(Collections.singleton(TEST_LOCK_KEY));
+
+        redisLock.lock();
+        watchdog.renew();
+
+        Map<String, String> expected = Collections.singletonMap(TEST_LOCK_KEY, holder.get());
+        verify(redisClient).renew(expected, LEASE);
+    }
+
+    @Test
+    public void renewNothingAfterUnlock() {
+        redisLock.lock();
+        redisLock.unlock();
+        watchdog.renew();
+
+        verify(redisClient, never()).renew(anyMap(), eq(LEASE));
+    }
+
+    @Test
+    public void stopRenewingLostLock() {
+        when(redisClient.renew(anyMap(), eq(LEASE))).thenReturn(Collections.emptySet());
+        when(redisClient.getLock(TEST_LOCK_KEY)).thenReturn("someone-else");
+
+        redisLock.lock();
+        watchdog.renew();
+        watchdog.renew();
+        verify(redisClient).renew(anyMap(), eq(LEASE));
+
+        String lost = holder.get();
+        redisLock.lock();
+        verify(redisClient).getLock(TEST_LOCK_KEY);
+        assertNotEquals(lost, holder.get());
+    }
+
+    @Test
+    public void renewHoldersOfSameKeySeparately() {
+        when(redisClient.renew(anyMap(), eq(LEASE))).thenAnswer(invocation -> {
+            Map<String, String> locks = invocation.getArgument(0);
+            return "live".equals(locks.get(TEST_LOCK_KEY)) ? Collections.singleton(TEST_LOCK_KEY) : Collections.emptySet();
+        });
+        LeaseHolder stale = mock(LeaseHolder.class);
+        when(stale.getKey()).thenReturn(TEST_LOCK_KEY);
+        LeaseHolder live = mock(LeaseHolder.class);
+        when(live.getKey()).thenReturn(TEST_LOCK_KEY);
+
+        watchdog.watch(stale, "stale");
+        watchdog.watch(live, "live");
+        watchdog.renew();
+
+        verify(live).leaseRenewed(eq("live"), eq(LEASE), anyLong());
+        verify(live, never()).leaseLost(anyString());
+        verify(stale).leaseLost("stale");
+    }
+}
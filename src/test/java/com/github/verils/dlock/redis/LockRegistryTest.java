@@ -0,0 +1,188 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.metrics.WaitTimeWindow;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class LockRegistryTest {
+
+    private static final String TEST_LOCK_KEY = "test:registry";
+    private static final int EXPIRE_IN_SECONDS = 5;
+
+    private InMemoryRedisClient redisClient;
+
+    private LockRegistry registry;
+
+    @Before
+    public void setUp() {
+        redisClient = spy(new InMemoryRedisClient());
+        registry = new LockRegistry(key -> new RedisReentrantLock(redisClient, key, EXPIRE_IN_SECONDS, BackoffStrategy.fixed(5)));
+    }
+
+    @Test
+    public void sameLockPerKey() {
+        RedisReentrantLock lock = registry.obtain(TEST_LOCK_KEY);
+        assertSame(lock, registry.obtain(TEST_LOCK_KEY));
+        assertNotSame(lock, registry.obtain(TEST_LOCK_KEY + ":other"));
+        assertEquals(TEST_LOCK_KEY, lock.getKey());
+    }
+
+    @Test
+    public void localThreadsShareOneRedisContender() throws ExecutionException, InterruptedException {
+        redisClient.tryAcquire(TEST_LOCK_KEY, "other", EXPIRE_IN_SECONDS);
+
+        int threads = 8;
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                RedisReentrantLock lock = registry.obtain(TEST_LOCK_KEY);
+                lock.lock();
+                try {
+                    count.incrementAndGet();
+                } finally {
+                    lock.unlock();
+                }
+            }, executor));
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        // 其他进程持有锁期间，只有一个线程在访问Redis
+        ArgumentCaptor<String> values = ArgumentCaptor.forClass(String.class);
+        verify(redisClient, atLeastOnce()).tryAcquire(eq(TEST_LOCK_KEY), values.capture(), any(Duration.class));
+        assertEquals(1, new HashSet<>(values.getAllValues()).size());
+
+        redisClient.release(TEST_LOCK_KEY, "other");
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        executor.shutdown();
+        assertEquals(threads, count.get());
+    }
+
+    @Test
+    public void evictUnreferencedLocks() throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            registry.obtain(TEST_LOCK_KEY + ":" + i);
+        }
+        awaitCollected(() -> registry.size() == 0);
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void keepHeldLocks() throws InterruptedException {
+        registry.obtain(TEST_LOCK_KEY).lock();
+        registry.obtain(TEST_LOCK_KEY + ":idle");
+        awaitCollected(() -> registry.size() == 1);
+
+        assertEquals(1, registry.heldCount());
+        registry.obtain(TEST_LOCK_KEY).unlock();
+        assertEquals(0, registry.heldCount());
+        assertNull(redisClient.getLock(TEST_LOCK_KEY));
+    }
+
+    @Test
+    public void listHeldLocks() throws InterruptedException {
+        RedisReentrantLock lock = registry.obtain(TEST_LOCK_KEY);
+        lock.lock();
+        Thread waiter = new Thread(() -> {
+            lock.lock();
+            lock.unlock();
+        });
+        waiter.start();
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        List<HeldLock> held = registry.getHeldLocks();
+        assertEquals(1, held.size());
+        assertEquals(TEST_LOCK_KEY, held.get(0).getKey());
+        assertEquals(redisClient.getLock(TEST_LOCK_KEY), held.get(0).getToken());
+        assertEquals(Thread.currentThread().getName(), held.get(0).getHolder());
+        assertEquals(1, held.get(0).getQueueLength());
+        assertTrue(held.get(0).getHoldTime(TimeUnit.MILLISECONDS) >= 50);
+
+        RemoteLock remote = redisClient.inspect(TEST_LOCK_KEY);
+        assertEquals(held.get(0).getToken(), remote.getToken());
+        assertTrue(remote.isHeldByThisProcess());
+        assertTrue(remote.getTtl(TimeUnit.MILLISECONDS) > 0);
+
+        lock.unlock();
+        waiter.join();
+        assertTrue(registry.getHeldLocks().isEmpty());
+    }
+
+    @Test
+    public void rankHotKeys() throws ExecutionException, InterruptedException {
+        redisClient.tryAcquire(TEST_LOCK_KEY, "other", EXPIRE_IN_SECONDS);
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            RedisReentrantLock lock = registry.obtain(TEST_LOCK_KEY);
+            lock.lock();
+            lock.unlock();
+        });
+        RedisReentrantLock cold = registry.obtain(TEST_LOCK_KEY + ":cold");
+        cold.lock();
+        cold.unlock();
+        TimeUnit.MILLISECONDS.sleep(50);
+        redisClient.release(TEST_LOCK_KEY, "other");
+        future.get();
+
+        List<WaitTimeWindow.HotKey> hotKeys = registry.getHotKeys(10);
+        assertEquals(1, hotKeys.size());
+        assertEquals(TEST_LOCK_KEY, hotKeys.get(0).getKey());
+        assertTrue(hotKeys.get(0).getWaitTime(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    @Test
+    public void stripedLocks() {
+        LockRegistry striped = LockRegistry.striped(16, index ->
+                new RedisReentrantLock(redisClient, TEST_LOCK_KEY + ":" + index, EXPIRE_IN_SECONDS));
+
+        Set<RedisReentrantLock> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 1000; i++) {
+            RedisReentrantLock lock = striped.obtain("user:" + i);
+            assertSame(lock, striped.obtain("user:" + i));
+            used.add(lock);
+        }
+        assertEquals(16, used.size());
+        assertEquals(16, striped.size());
+
+        RedisReentrantLock lock = striped.obtain("user:1");
+        lock.lock();
+        assertEquals(1, striped.heldCount());
+        assertEquals(1, striped.getHeldLocks().size());
+        lock.unlock();
+        assertEquals(0, striped.heldCount());
+    }
+
+    /**
+     * 反复触发垃圾回收，直到条件满足或者超时
+     */
+    private static void awaitCollected(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() - deadline < 0) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
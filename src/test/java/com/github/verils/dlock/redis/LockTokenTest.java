@@ -0,0 +1,60 @@
+package com.github.verils.dlock.redis;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LockTokenTest {
+
+    @Test
+    public void next() {
+        String token = LockToken.next();
+        assertEquals(LockToken.LENGTH, token.length());
+        assertTrue(token.matches("[0-9a-f]+"));
+        assertNotEquals(token, LockToken.next());
+    }
+
+    @Test
+    public void isLocal() {
+        assertTrue(LockToken.isLocal(LockToken.next()));
+        assertFalse(LockToken.isLocal("other"));
+        assertFalse(LockToken.isLocal(new StringBuilder(LockToken.next()).reverse().toString()));
+    }
+
+    @Test
+    public void nextIntoBuffer() {
+        byte[] buffer = new byte[LockToken.LENGTH + 2];
+        LockToken.next(buffer, 1);
+        String token = new String(buffer, 1, LockToken.LENGTH, StandardCharsets.US_ASCII);
+        assertTrue(token.matches("[0-9a-f]+"));
+        assertEquals(0, buffer[0]);
+        assertEquals(0, buffer[LockToken.LENGTH + 1]);
+        assertEquals(LockToken.next().substring(0, 16), token.substring(0, 16));
+    }
+
+    @Test
+    public void uniqueAcrossThreads() throws InterruptedException {
+        Set<String> tokens = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    tokens.add(LockToken.next());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(80000, tokens.size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.Toilet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MultiLockTest {
+
+    private static final int EXPIRE_IN_SECONDS = 5;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private InMemoryRedisClient redisClient;
+
+    private MultiLock multiLock;
+
+    @Before
+    public void setUp() {
+        redisClient = new InMemoryRedisClient();
+        multiLock = new MultiLock(redisClient, Arrays.asList("order:2", "order:1", "stock:1", "order:1"), EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void test() throws ExecutionException, InterruptedException {
+        Toilet toilet = Toilet.test(multiLock, 6, 20);
+        assertEquals(20, toilet.getCount());
+    }
+
+    @Test
+    public void testReentrant() throws ExecutionException, InterruptedException {
+        Toilet toilet = Toilet.testReentrant(multiLock, 6, 20);
+        assertEquals(20, toilet.getCount());
+    }
+
+    @Test
+    public void keysSortedAndDistinct() {
+        assertEquals(Arrays.asList("order:1", "order:2", "stock:1"), multiLock.getKeys());
+    }
+
+    @Test
+    public void lockAllKeys() {
+        multiLock.lock();
+        String value = redisClient.getLock("order:1");
+        assertNotNull(value);
+        assertEquals(value, redisClient.getLock("order:2"));
+        assertEquals(value, redisClient.getLock("stock:1"));
+
+        multiLock.unlock();
+        assertNull(redisClient.getLock("order:1"));
+        assertNull(redisClient.getLock("order:2"));
+        assertNull(redisClient.getLock("stock:1"));
+    }
+
+    @Test
+    public void tryLockAcquiresNoneWhenAnyHeld() {
+        redisClient.tryAcquire("order:2", "someone-else", EXPIRE_IN_SECONDS);
+
+        assertFalse(multiLock.tryLock());
+        assertNull(redisClient.getLock("order:1"));
+        assertNull(redisClient.getLock("stock:1"));
+    }
+
+    @Test
+    public void tryLockTimeout() throws InterruptedException {
+        redisClient.tryAcquire("stock:1", "someone-else", EXPIRE_IN_SECONDS);
+
+        long start = System.nanoTime();
+        assertFalse(multiLock.tryLock(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertNull(redisClient.getLock("order:1"));
+    }
+
+    @Test
+    public void lockAwaitsBlockingKey() throws InterruptedException {
+        RedisClient redis = mock(RedisClient.class);
+        when(redis.tryAcquireAll(anyList(), anyString(), eq(EXPIRE_IN_SECONDS))).thenReturn(1, -1);
+        Lock lock = new MultiLock(redis, Arrays.asList("b", "a"), EXPIRE_IN_SECONDS);
+        lock.lock();
+
+        verify(redis).awaitRelease("b", 30);
+    }
+
+    @Test
+    public void unlockExpired() {
+        multiLock.lock();
+        redisClient.release("order:2");
+
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Lock has expired or been acquired by others");
+
+        multiLock.unlock();
+    }
+
+    @Test
+    public void unlockWithoutThreadLock() {
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Current thread is not holding lock");
+
+        multiLock.unlock();
+    }
+}
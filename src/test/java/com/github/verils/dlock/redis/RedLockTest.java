@@ -0,0 +1,135 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.Toilet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+public class RedLockTest {
+
+    private static final String TEST_LOCK_KEY = "test:redlock";
+    private static final int EXPIRE_IN_SECONDS = 5;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private List<InMemoryRedisClient> nodes;
+
+    private RedLock redLock;
+
+    @Before
+    public void setUp() {
+        nodes = Arrays.asList(new InMemoryRedisClient(), new InMemoryRedisClient(), new InMemoryRedisClient());
+        // 在调用者线程中执行，释放完成后才返回，便于检查各节点的状态
+        redLock = new RedLock(nodes, TEST_LOCK_KEY, EXPIRE_IN_SECONDS, BackoffStrategy.fixed(5), Runnable::run);
+    }
+
+    @Test
+    public void testReentrant() throws ExecutionException, InterruptedException {
+        RedLock parallel = new RedLock(nodes, TEST_LOCK_KEY, EXPIRE_IN_SECONDS);
+        Toilet toilet = Toilet.testReentrant(parallel, 6, 20);
+        assertEquals(20, toilet.getCount());
+    }
+
+    @Test
+    public void lockOnMajority() {
+        nodes.get(0).tryAcquire(TEST_LOCK_KEY, "other", EXPIRE_IN_SECONDS);
+
+        assertTrue(redLock.tryLock());
+        String value = nodes.get(1).getLock(TEST_LOCK_KEY);
+        assertNotNull(value);
+        assertEquals(value, nodes.get(2).getLock(TEST_LOCK_KEY));
+
+        redLock.unlock();
+        assertEquals("other", nodes.get(0).getLock(TEST_LOCK_KEY));
+        assertNull(nodes.get(1).getLock(TEST_LOCK_KEY));
+        assertNull(nodes.get(2).getLock(TEST_LOCK_KEY));
+    }
+
+    @Test
+    public void releaseMinorityOnFailure() throws InterruptedException {
+        nodes.get(0).tryAcquire(TEST_LOCK_KEY, "other", EXPIRE_IN_SECONDS);
+        nodes.get(1).tryAcquire(TEST_LOCK_KEY, "other", EXPIRE_IN_SECONDS);
+
+        assertFalse(redLock.tryLock());
+        assertFalse(redLock.tryLock(50, TimeUnit.MILLISECONDS));
+        assertNull(nodes.get(2).getLock(TEST_LOCK_KEY));
+        assertEquals("other", nodes.get(0).getLock(TEST_LOCK_KEY));
+    }
+
+    @Test
+    public void tolerateFailedNode() {
+        RedisClient broken = mock(RedisClient.class);
+        when(broken.tryAcquire(anyString(), anyString(), anyInt())).thenThrow(new IllegalStateException("Connection refused"));
+        when(broken.release(anyString(), anyString())).thenThrow(new IllegalStateException("Connection refused"));
+        RedLock lock = new RedLock(Arrays.asList(nodes.get(0), broken, nodes.get(1)), TEST_LOCK_KEY, EXPIRE_IN_SECONDS,
+                BackoffStrategy.fixed(5), Runnable::run);
+
+        lock.lock();
+        assertNotNull(nodes.get(0).getLock(TEST_LOCK_KEY));
+        lock.unlock();
+        assertNull(nodes.get(0).getLock(TEST_LOCK_KEY));
+    }
+
+    @Test
+    public void acquireInParallel() {
+        List<InMemoryRedisClient> slowNodes = Arrays.asList(slowNode(), slowNode(), slowNode());
+        RedLock lock = new RedLock(slowNodes, TEST_LOCK_KEY, EXPIRE_IN_SECONDS);
+
+        long start = System.nanoTime();
+        lock.lock();
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(250));
+        lock.unlock();
+    }
+
+    @Test
+    public void validityExcludesElapsedTimeAndDrift() {
+        redLock.lock();
+        long validity = redLock.getValidity(TimeUnit.MILLISECONDS);
+        assertTrue(validity <= TimeUnit.SECONDS.toMillis(EXPIRE_IN_SECONDS) - 52);
+        assertTrue(validity > TimeUnit.SECONDS.toMillis(EXPIRE_IN_SECONDS) - 500);
+        redLock.unlock();
+        assertEquals(0, redLock.getValidity(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void unlockExpired() throws InterruptedException {
+        RedLock shortLease = new RedLock(nodes, TEST_LOCK_KEY, 1, BackoffStrategy.fixed(5), Runnable::run);
+        shortLease.lock();
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertTrue(redLock.tryLock());
+
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Lock has expired or been acquired by others");
+
+        shortLease.unlock();
+    }
+
+    /**
+     * 每次获取锁都需要100毫秒的节点
+     */
+    private static InMemoryRedisClient slowNode() {
+        InMemoryRedisClient node = spy(new InMemoryRedisClient());
+        doAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(100);
+            return invocation.callRealMethod();
+        }).when(node).tryAcquire(eq(TEST_LOCK_KEY), anyString(), anyInt());
+        return node;
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.Toilet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RedisFairLockTest {
+
+    private static final String TEST_LOCK_KEY = "test:fair";
+    private static final int EXPIRE_IN_SECONDS = 5;
+    private static final long HEARTBEAT_MILLIS = 300;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private InMemoryRedisClient redisClient;
+
+    private RedisFairLock fairLock;
+
+    @Before
+    public void setUp() {
+        redisClient = new InMemoryRedisClient();
+        fairLock = newLock();
+    }
+
+    @Test
+    public void testReentrant() throws ExecutionException, InterruptedException {
+        Toilet toilet = Toilet.testReentrant(fairLock, 6, 20);
+        assertEquals(20, toilet.getCount());
+    }
+
+    @Test
+    public void acquireInQueueOrder() throws ExecutionException, InterruptedException {
+        fairLock.lock();
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            // 模拟不同进程中的锁，等上一个进入队列后再启动下一个
+            RedisFairLock lock = newLock();
+            futures.add(CompletableFuture.runAsync(() -> {
+                lock.lock();
+                try {
+                    order.add(index);
+                } finally {
+                    lock.unlock();
+                }
+            }));
+            while (redisClient.getQueueLength(TEST_LOCK_KEY) < i + 1) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        }
+
+        fairLock.unlock();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), order);
+        assertEquals(0, redisClient.getQueueLength(TEST_LOCK_KEY));
+    }
+
+    @Test
+    public void interruptedLockKeepsQueuePosition() throws ExecutionException, InterruptedException {
+        fairLock.lock();
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+        for (int i = 0; i < 2; i++) {
+            int index = i;
+            RedisFairLock lock = newLock();
+            Thread thread = new Thread(() -> {
+                lock.lock();
+                try {
+                    order.add(index);
+                    if (index == 0) {
+                        interrupted.complete(Thread.currentThread().isInterrupted());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+            while (redisClient.getQueueLength(TEST_LOCK_KEY) < i + 1) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        }
+
+        threads.get(0).interrupt();
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertEquals(2, redisClient.getQueueLength(TEST_LOCK_KEY));
+
+        fairLock.unlock();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Arrays.asList(0, 1), order);
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void tryLockLeavesQueue() throws InterruptedException {
+        fairLock.lock();
+        RedisFairLock otherLock = newLock();
+
+        assertFalse(otherLock.tryLock());
+        assertEquals(0, redisClient.getQueueLength(TEST_LOCK_KEY));
+
+        assertFalse(otherLock.tryLock(50, TimeUnit.MILLISECONDS));
+        assertEquals(0, redisClient.getQueueLength(TEST_LOCK_KEY));
+
+        fairLock.unlock();
+        assertTrue(otherLock.tryLock());
+        otherLock.unlock();
+    }
+
+    @Test
+    public void waiterAheadBlocksTryLock() {
+        fairLock.lock();
+        redisClient.tryAcquireFair(TEST_LOCK_KEY, "waiter", EXPIRE_IN_SECONDS, TimeUnit.SECONDS.toMillis(EXPIRE_IN_SECONDS));
+        fairLock.unlock();
+
+        RedisFairLock otherLock = newLock();
+        assertFalse(otherLock.tryLock());
+
+        redisClient.cancelFair(TEST_LOCK_KEY, "waiter");
+        assertTrue(otherLock.tryLock());
+        otherLock.unlock();
+    }
+
+    @Test
+    public void staleWaiterRemoved() throws InterruptedException {
+        fairLock.lock();
+        redisClient.tryAcquireFair(TEST_LOCK_KEY, "crashed", EXPIRE_IN_SECONDS, 50);
+        fairLock.unlock();
+
+        RedisFairLock otherLock = newLock();
+        assertTrue(otherLock.tryLock(1, TimeUnit.SECONDS));
+        assertEquals(0, redisClient.getQueueLength(TEST_LOCK_KEY));
+        otherLock.unlock();
+    }
+
+    @Test
+    public void unlockExpired() throws InterruptedException {
+        RedisFairLock shortLease = new RedisFairLock(redisClient, TEST_LOCK_KEY, 1);
+        shortLease.lock();
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertTrue(newLock().tryLock());
+
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Lock has expired or been acquired by others");
+
+        shortLease.unlock();
+    }
+
+    private RedisFairLock newLock() {
+        return new RedisFairLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS, BackoffStrategy.fixed(5), HEARTBEAT_MILLIS);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.verils.dlock.redis;
+
+import com.github.verils.dlock.AsyncDistributedLock;
+import com.github.verils.dlock.LockHandle;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RedisReentrantLockAsyncTest {
+
+    private static final String TEST_LOCK_KEY = "test:lock";
+    private static final int EXPIRE_IN_SECONDS = 5;
+    private static final Duration LEASE = Duration.ofSeconds(EXPIRE_IN_SECONDS);
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private RedisClient redisClient;
+
+    private AsyncDistributedLock redisLock;
+
+    @Before
+    public void setUp() {
+        redisClient = mock(RedisClient.class);
+        redisLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS, 10);
+    }
+
+    @Test
+    public void lockAsync() throws InterruptedException, ExecutionException, TimeoutException {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(false, false, true);
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenReturn(true);
+
+        LockHandle handle = redisLock.lockAsync().toCompletableFuture().get(1, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        handle.unlock();
+
+        verify(redisClient).release(eq(TEST_LOCK_KEY), anyString());
+    }
+
+    @Test
+    public void tryLockAsyncTimeout() throws InterruptedException, ExecutionException, TimeoutException {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(false);
+
+        CompletableFuture<LockHandle> future = redisLock.tryLockAsync(50, 5000, TimeUnit.MILLISECONDS).toCompletableFuture();
+        assertNull(future.get(1, TimeUnit.SECONDS));
+
+        verify(redisClient, atLeast(2)).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+    }
+
+    @Test
+    public void lockAsyncExceptional() throws InterruptedException, ExecutionException, TimeoutException {
+        RuntimeException thrown = new RuntimeException("Test thrown when set key to redis");
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(thrown);
+
+        expectedException.expect(ExecutionException.class);
+        expectedException.expectMessage(thrown.getMessage());
+
+        redisLock.lockAsync().toCompletableFuture().get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void slowRedisDoesNotBlockOtherLocks() throws InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch stalled = new CountDownLatch(1);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenAnswer(invocation -> {
+            stalled.await();
+            return true;
+        });
+        when(redisClient.tryAcquire(eq("test:other"), anyString(), eq(LEASE))).thenReturn(true);
+
+        try {
+            // 多于调度线程数的请求卡在慢的Redis调用上
+            for (int i = 0; i < Runtime.getRuntime().availableProcessors() + 2; i++) {
+                redisLock.lockAsync();
+            }
+            AsyncDistributedLock otherLock = new RedisReentrantLock(redisClient, "test:other", EXPIRE_IN_SECONDS, 10);
+            assertNotNull(otherLock.lockAsync().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        } finally {
+            stalled.countDown();
+        }
+    }
+
+    @Test
+    public void unlockTwice() throws InterruptedException, ExecutionException, TimeoutException {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(true);
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenReturn(true);
+
+        LockHandle handle = redisLock.lockAsync().toCompletableFuture().get(1, TimeUnit.SECONDS);
+        handle.unlock();
+
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Lock has already been released");
+
+        handle.unlock();
+    }
+}
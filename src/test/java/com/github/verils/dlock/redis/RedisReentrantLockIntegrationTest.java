@@ -1,23 +1,31 @@
 package com.github.verils.dlock.redis;
 
 import com.github.verils.dlock.Toilet;
+import com.github.verils.dlock.metrics.LockMetrics;
 import com.github.verils.dlock.redis.client.JedisClient;
+import com.github.verils.dlock.redis.client.MultiplexedJedisClient;
 import org.junit.Before;
 import org.junit.Test;
 import redis.clients.jedis.JedisPool;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class RedisReentrantLockIntegrationTest {
 
+    private JedisPool jedisPool;
+
     private Lock lock;
 
     @Before
     public void setUp() {
-        JedisPool jedisPool = new JedisPool("docker.local");
+        jedisPool = new JedisPool("docker.local");
         RedisClient client = new JedisClient(jedisPool);
         lock = new RedisReentrantLock(client, "toilet:lock", 5);
     }
@@ -33,4 +41,43 @@ public class RedisReentrantLockIntegrationTest {
         Toilet toilet = Toilet.testTry(lock, 6, 20);
         assertEquals(1, toilet.getCount());
     }
+
+    @Test
+    public void testNotifyOnRelease() throws Exception {
+        JedisClient holderClient = new JedisClient(jedisPool, true);
+        JedisClient waiterClient = new JedisClient(jedisPool, true);
+        try {
+            Lock holder = new RedisReentrantLock(holderClient, "toilet:notified", Duration.ofSeconds(5), BackoffStrategy.fixed(5000), null, 0);
+            Lock waiter = new RedisReentrantLock(waiterClient, "toilet:notified", Duration.ofSeconds(5), BackoffStrategy.fixed(5000), null, 0);
+            holder.lock();
+            CompletableFuture<Long> waited = CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                waiter.lock();
+                waiter.unlock();
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            });
+            Thread.sleep(200);
+            holder.unlock();
+            assertTrue(waited.get(3, TimeUnit.SECONDS) < 1000);
+        } finally {
+            holderClient.close();
+            waiterClient.close();
+        }
+    }
+
+    @Test
+    public void testPinnedConnections() throws ExecutionException, InterruptedException {
+        RedisClient client = new JedisClient(jedisPool, false, 0, LockMetrics.NOOP, true);
+        Toilet toilet = Toilet.testReentrant(new RedisReentrantLock(client, "toilet:pinned", 5), 6, 20);
+        assertEquals(20, toilet.getCount());
+        assertEquals(0, jedisPool.getNumActive());
+    }
+
+    @Test
+    public void testMultiplexed() throws ExecutionException, InterruptedException {
+        try (MultiplexedJedisClient client = new MultiplexedJedisClient("docker.local", 6379)) {
+            Toilet toilet = Toilet.testReentrant(new RedisReentrantLock(client, "toilet:multiplexed", 5), 6, 20);
+            assertEquals(20, toilet.getCount());
+        }
+    }
 }
@@ -1,26 +1,47 @@
 package com.github.verils.dlock.redis;
 
 import com.github.verils.dlock.Toilet;
+import com.github.verils.dlock.metrics.LockMetrics;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import static org.junit.Assert.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class RedisReentrantLockTest {
 
     private static final String TEST_LOCK_KEY = "test:lock";
     private static final int EXPIRE_IN_SECONDS = 5;
+    private static final Duration LEASE = Duration.ofSeconds(EXPIRE_IN_SECONDS);
 
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
@@ -38,11 +59,11 @@ public class RedisReentrantLockTest {
     @Test
     public void test() throws ExecutionException, InterruptedException {
         Queue<String> queue = new ArrayBlockingQueue<>(1);
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenAnswer(invocation -> {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenAnswer(invocation -> {
             queue.add(invocation.getArgument(1));
             return true;
         });
-        when(redisClient.getLock(TEST_LOCK_KEY)).thenAnswer(invocation -> queue.poll());
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenAnswer(invocation -> invocation.getArgument(1).equals(queue.poll()));
 
         Toilet toilet = Toilet.test(redisLock, 6, 20);
         assertEquals(20, toilet.getCount());
@@ -50,29 +71,167 @@ public class RedisReentrantLockTest {
 
     @Test
     public void lockNormal() {
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenReturn(true);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(true);
         redisLock.lock();
     }
 
+    @Test
+    public void lockAwaitsRelease() throws InterruptedException {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(false, true);
+        redisLock.lock();
+
+        verify(redisClient).awaitRelease(TEST_LOCK_KEY, 30);
+    }
+
+    @Test
+    public void lockBacksOffByRemainingTtl() throws InterruptedException {
+        Lock adaptiveLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS, BackoffStrategy.adaptive(1, 1000));
+        when(redisClient.tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(2L, 0L);
+        adaptiveLock.lock();
+
+        verify(redisClient).awaitRelease(eq(TEST_LOCK_KEY), longThat(delay -> delay >= 1 && delay <= 2));
+        verify(redisClient, never()).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+    }
+
+    @Test
+    public void lockSubscribesBeforeRetryAndWaitsForRemainingTtl() throws InterruptedException {
+        ReleaseSubscription subscription = mock(ReleaseSubscription.class);
+        when(subscription.isSubscribed()).thenReturn(true);
+        when(redisClient.subscribeRelease(TEST_LOCK_KEY)).thenReturn(subscription);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(false);
+        when(redisClient.tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(1200L, 0L);
+        redisLock.lock();
+
+        InOrder inOrder = inOrder(redisClient, subscription);
+        inOrder.verify(redisClient).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+        inOrder.verify(redisClient).subscribeRelease(TEST_LOCK_KEY);
+        inOrder.verify(redisClient).tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+        inOrder.verify(subscription).await(1200);
+        inOrder.verify(redisClient).tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+        inOrder.verify(subscription).close();
+        verify(redisClient, never()).awaitRelease(eq(TEST_LOCK_KEY), anyLong());
+    }
+
+    @Test
+    public void lockWithEncodedKey() {
+        BinaryRedisClient binaryClient = mock(BinaryRedisClient.class);
+        byte[] encodedKey = TEST_LOCK_KEY.getBytes(StandardCharsets.UTF_8);
+        Queue<byte[]> queue = new ArrayBlockingQueue<>(1);
+        when(binaryClient.tryAcquire(aryEq(encodedKey), any(byte[].class), eq(LEASE))).thenAnswer(invocation -> {
+            byte[] value = invocation.getArgument(1);
+            queue.add(value.clone());
+            return true;
+        });
+        when(binaryClient.release(aryEq(encodedKey), any(byte[].class))).thenAnswer(invocation -> {
+            byte[] value = invocation.getArgument(1);
+            return Arrays.equals(value, queue.poll());
+        });
+
+        Lock binaryLock = new RedisReentrantLock(binaryClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS);
+        binaryLock.lock();
+        binaryLock.unlock();
+        binaryLock.lock();
+        binaryLock.unlock();
+
+        verify(binaryClient, never()).tryAcquire(anyString(), anyString(), eq(LEASE));
+        verify(binaryClient, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    public void lockPinsSessionForHold() {
+        SessionRedisClient sessionClient = mock(SessionRedisClient.class);
+        RedisSession session = mock(RedisSession.class);
+        when(sessionClient.openSession()).thenReturn(session);
+        when(session.tryAcquire(any(byte[].class), any(byte[].class), eq(LEASE))).thenReturn(false, true);
+        when(session.release(any(byte[].class), any(byte[].class))).thenReturn(true);
+
+        Lock sessionLock = new RedisReentrantLock(sessionClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS);
+        sessionLock.lock();
+        verify(session, times(1)).close();
+        sessionLock.unlock();
+        verify(session, times(2)).close();
+
+        verify(sessionClient, times(1)).openSession();
+        verify(sessionClient, never()).tryAcquire(anyString(), anyString(), eq(LEASE));
+        verify(sessionClient, never()).release(anyString(), anyString());
+    }
+
     @Test
     public void lockReentrant() {
         Queue<String> queue = new ArrayBlockingQueue<>(1);
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenAnswer(invocation -> {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenAnswer(invocation -> {
             queue.add(invocation.getArgument(1));
             return true;
         });
         when(redisClient.getLock(TEST_LOCK_KEY)).thenAnswer(invocation -> queue.peek());
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenAnswer(invocation -> invocation.getArgument(1).equals(queue.poll()));
 
         redisLock.lock();
         redisLock.lock();
         redisLock.unlock();
         redisLock.unlock();
+
+        verify(redisClient, never()).getLock(TEST_LOCK_KEY);
+    }
+
+    @Test
+    public void tryLockReentrantAfterLeaseExpired() throws InterruptedException {
+        Queue<String> queue = new ArrayBlockingQueue<>(1);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(Duration.ZERO))).thenAnswer(invocation -> {
+            queue.add(invocation.getArgument(1));
+            return true;
+        });
+        when(redisClient.getLock(TEST_LOCK_KEY)).thenAnswer(invocation -> queue.peek());
+
+        assertTrue(redisLock.tryLock(0, TimeUnit.SECONDS));
+        assertTrue(redisLock.tryLock(0, TimeUnit.SECONDS));
+
+        verify(redisClient).getLock(TEST_LOCK_KEY);
+    }
+
+    @Test
+    public void tryLockKeepsHoldWhenReentryFails() throws Exception {
+        RedisReentrantLock timedLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, LEASE);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(true);
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenReturn(true);
+        doThrow(new RuntimeException("Test thrown when expire key in redis")).doNothing().when(redisClient).expire(TEST_LOCK_KEY, LEASE);
+
+        timedLock.lock();
+        assertFalse(timedLock.tryLock(1, EXPIRE_IN_SECONDS, TimeUnit.SECONDS));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertFalse(executor.submit(() -> timedLock.tryLock()).get());
+            timedLock.unlock();
+            verify(redisClient).release(eq(TEST_LOCK_KEY), anyString());
+            assertTrue(executor.submit(() -> timedLock.tryLock()).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void lockHandsOffToLocalThreads() throws ExecutionException, InterruptedException {
+        Lock handoffLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, EXPIRE_IN_SECONDS, BackoffStrategy.fixed(30), null, 5);
+        Queue<String> queue = new ArrayBlockingQueue<>(1);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenAnswer(invocation -> {
+            queue.add(invocation.getArgument(1));
+            return true;
+        });
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenAnswer(invocation -> invocation.getArgument(1).equals(queue.poll()));
+
+        Toilet toilet = Toilet.test(handoffLock, 6, 20);
+        assertEquals(20, toilet.getCount());
+        assertTrue(queue.isEmpty());
+
+        verify(redisClient, atLeast(4)).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+        verify(redisClient, atMost(19)).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
     }
 
     @Test
     public void lockExceptional() {
         RuntimeException thrown = new RuntimeException("Test thrown when set key to redis");
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenThrow(thrown);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(thrown);
 
         expectedException.expect(thrown.getClass());
         expectedException.expectMessage(thrown.getMessage());
@@ -82,7 +241,7 @@ public class RedisReentrantLockTest {
 
     @Test
     public void tryLockNormal() {
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenReturn(true);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(true);
 
         boolean locked = redisLock.tryLock();
         assertTrue(locked);
@@ -91,21 +250,106 @@ public class RedisReentrantLockTest {
     @Test
     public void tryLockExceptional() {
         RuntimeException thrown = new RuntimeException("Test thrown when set key to redis");
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenThrow(thrown);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(thrown);
 
         boolean locked = redisLock.tryLock();
         assertFalse(locked);
     }
 
+    @Test
+    public void tryLockWithMillisecondLease() {
+        Duration lease = Duration.ofMillis(250);
+        Lock shortLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, lease);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(lease))).thenReturn(true);
+
+        assertTrue(shortLock.tryLock());
+        verify(redisClient).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(lease));
+    }
+
+    @Test
+    public void tryLockWithinWaitTime() throws InterruptedException {
+        RedisReentrantLock timedLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, LEASE);
+        when(redisClient.tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE), any(Duration.class))).thenReturn(-1L, 0L);
+
+        assertTrue(timedLock.tryLock(1, EXPIRE_IN_SECONDS, TimeUnit.SECONDS));
+        verify(redisClient, times(2)).tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE),
+                argThat(timeout -> timeout.compareTo(Duration.ofSeconds(1)) <= 0));
+    }
+
+    @Test
+    public void tryLockGivesUpAtDeadline() throws InterruptedException {
+        RedisReentrantLock timedLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, LEASE);
+        when(redisClient.tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE), any(Duration.class))).thenReturn(-1L);
+
+        long start = System.nanoTime();
+        assertFalse(timedLock.tryLock(100, LEASE.toMillis(), TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+        when(redisClient.tryAcquireOrTtl(eq(TEST_LOCK_KEY), anyString(), eq(LEASE), any(Duration.class))).thenReturn(0L);
+        assertTrue(timedLock.tryLock(100, LEASE.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void lockFailsFastWhileBreakerOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, Duration.ofSeconds(1), 1, 1, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        Lock guardedLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, LEASE, BackoffStrategy.fixed(30), null, 0,
+                LockMetrics.NOOP, breaker, CircuitBreaker.Fallback.FAIL_FAST);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(new RuntimeException("Redis is down"));
+
+        assertFalse(guardedLock.tryLock());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        expectedException.expect(CircuitBreakerOpenException.class);
+        try {
+            guardedLock.lock();
+        } finally {
+            verify(redisClient, times(1)).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+        }
+    }
+
+    @Test
+    public void lockLocallyWhileBreakerOpen() throws ExecutionException, InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, Duration.ofSeconds(1), 1, 1, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        Lock guardedLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, LEASE, BackoffStrategy.fixed(30), null, 0,
+                LockMetrics.NOOP, breaker, CircuitBreaker.Fallback.LOCAL_ONLY);
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(new RuntimeException("Redis is down"));
+        assertFalse(guardedLock.tryLock());
+
+        Toilet toilet = Toilet.test(guardedLock, 6, 20);
+        assertEquals(20, toilet.getCount());
+
+        guardedLock.lock();
+        guardedLock.lock();
+        guardedLock.unlock();
+        guardedLock.unlock();
+        verify(redisClient, times(1)).tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE));
+        verify(redisClient, never()).release(eq(TEST_LOCK_KEY), anyString());
+        verify(redisClient, never()).getLock(TEST_LOCK_KEY);
+    }
+
     @Test
     public void unlockNormal() {
         Queue<String> queue = new ArrayBlockingQueue<>(1);
-        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenAnswer(invocation -> {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenAnswer(invocation -> {
             queue.add(invocation.getArgument(1));
             return true;
         });
-        when(redisClient.getLock(TEST_LOCK_KEY)).thenAnswer(invocation -> queue.poll());
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenAnswer(invocation -> invocation.getArgument(1).equals(queue.poll()));
+        redisLock.lock();
+        redisLock.unlock();
+
+        verify(redisClient, never()).getLock(TEST_LOCK_KEY);
+    }
+
+    @Test
+    public void unlockExpired() {
+        when(redisClient.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenReturn(true);
+        when(redisClient.release(eq(TEST_LOCK_KEY), anyString())).thenReturn(false);
         redisLock.lock();
+
+        expectedException.expect(IllegalMonitorStateException.class);
+        expectedException.expectMessage("Lock has expired or been acquired by others");
+
         redisLock.unlock();
     }
 
@@ -6,6 +6,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.time.Duration;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
 
@@ -19,6 +20,7 @@ public class RedisReentrantLockToiletTest {
 
     private static final String TEST_LOCK_KEY = "test:lock";
     private static final int EXPIRE_IN_SECONDS = 5;
+    private static final Duration LEASE = Duration.ofSeconds(EXPIRE_IN_SECONDS);
 
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
@@ -35,7 +37,7 @@ public class RedisReentrantLockToiletTest {
     @Test
     public void testExceptional() throws ExecutionException, InterruptedException {
         RuntimeException thrown = new RuntimeException("Test thrown when set key to redis");
-        when(redis.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenThrow(thrown);
+        when(redis.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(thrown);
 
         expectedException.expect(thrown.getClass());
         expectedException.expectMessage(thrown.getMessage());
@@ -46,7 +48,7 @@ public class RedisReentrantLockToiletTest {
     @Test
     public void testTryExceptional() throws ExecutionException, InterruptedException {
         RuntimeException thrown = new RuntimeException("Test thrown when set key to redis");
-        when(redis.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(EXPIRE_IN_SECONDS))).thenThrow(thrown);
+        when(redis.tryAcquire(eq(TEST_LOCK_KEY), anyString(), eq(LEASE))).thenThrow(thrown);
 
         Toilet toilet = Toilet.testTry(lock, 6, 20);
         assertEquals(0, toilet.getCount());
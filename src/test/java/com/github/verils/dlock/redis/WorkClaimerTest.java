@@ -0,0 +1,77 @@
+package com.github.verils.dlock.redis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WorkClaimerTest {
+
+    private static final int EXPIRE_IN_SECONDS = 5;
+
+    private static final List<String> CANDIDATES = Arrays.asList("job:1", "job:2", "job:3", "job:4", "job:5");
+
+    private InMemoryRedisClient redisClient;
+
+    private WorkClaimer claimer;
+
+    @Before
+    public void setUp() {
+        redisClient = new InMemoryRedisClient();
+        claimer = new WorkClaimer(redisClient, EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void claimSkipsHeldKeys() {
+        redisClient.tryAcquire("job:2", "someone-else", EXPIRE_IN_SECONDS);
+
+        Claim claim = claimer.claim(CANDIDATES, 3);
+        assertEquals(Arrays.asList("job:1", "job:3", "job:4"), claim.getKeys());
+        assertEquals(claim.getToken(), redisClient.getLock("job:1"));
+        assertEquals("someone-else", redisClient.getLock("job:2"));
+        assertNull(redisClient.getLock("job:5"));
+    }
+
+    @Test
+    public void claimNothingWhenAllHeld() {
+        Claim first = claimer.claim(CANDIDATES, CANDIDATES.size());
+        Claim second = claimer.claim(CANDIDATES, CANDIDATES.size());
+
+        assertEquals(CANDIDATES, first.getKeys());
+        assertTrue(second.isEmpty());
+        assertNotEquals(first.getToken(), second.getToken());
+    }
+
+    @Test
+    public void releaseInBatch() {
+        Claim claim = claimer.claim(CANDIDATES, 3);
+
+        assertTrue(claim.release(Arrays.asList("job:1", "job:3")));
+        assertEquals(Collections.singletonList("job:2"), claim.getKeys());
+        assertNull(redisClient.getLock("job:1"));
+        assertEquals(claim.getToken(), redisClient.getLock("job:2"));
+
+        assertFalse(claim.release(Collections.singletonList("job:1")));
+
+        claim.close();
+        assertTrue(claim.isEmpty());
+        assertNull(redisClient.getLock("job:2"));
+    }
+
+    @Test
+    public void renewDropsLostKeys() {
+        Claim claim = claimer.claim(CANDIDATES, 2);
+        redisClient.release("job:2");
+        redisClient.tryAcquire("job:2", "someone-else", EXPIRE_IN_SECONDS);
+
+        assertEquals(Collections.singleton("job:1"), claim.renew());
+        assertEquals(Collections.singletonList("job:1"), claim.getKeys());
+
+        claim.close();
+        assertEquals("someone-else", redisClient.getLock("job:2"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.verils.dlock.redis.client;
+
+import com.github.verils.dlock.metrics.LockMetrics;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JedisClientTest {
+
+    @Test
+    public void reportQueueTimeoutSeparately() {
+        JedisPool jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(mock(Jedis.class));
+        LockMetrics metrics = mock(LockMetrics.class);
+        JedisClient client = new JedisClient(jedisPool, false, 1, metrics);
+
+        Jedis held = client.borrow("tryAcquire", -1);
+        try {
+            client.tryAcquireOrTtl("test:lock", "value", Duration.ofSeconds(5), Duration.ofMillis(20));
+            fail();
+        } catch (JedisConnectionException e) {
+            // 唯一的名额被占用
+        } finally {
+            client.giveBack(held);
+        }
+
+        long min = TimeUnit.MILLISECONDS.toNanos(20);
+        verify(metrics).commandCompleted(eq("tryAcquireOrTtl.queued"), longThat(nanos -> nanos >= min), eq(false));
+        verify(metrics, never()).commandCompleted(eq("tryAcquireOrTtl"), anyLong(), anyBoolean());
+    }
+}
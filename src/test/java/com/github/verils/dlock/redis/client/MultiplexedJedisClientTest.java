@@ -0,0 +1,128 @@
+package com.github.verils.dlock.redis.client;
+
+import com.github.verils.dlock.metrics.LockMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MultiplexedJedisClientTest {
+
+    private static final String KEY = "test:lock";
+
+    private Jedis jedis;
+
+    private Pipeline pipeline;
+
+    private AtomicInteger connections;
+
+    private MultiplexedJedisClient redisClient;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        jedis = mock(Jedis.class);
+        pipeline = mock(Pipeline.class);
+        when(jedis.pipelined()).thenReturn(pipeline);
+
+        Response<Object> noScript = mock(Response.class);
+        when(noScript.get()).thenThrow(new JedisNoScriptException("NOSCRIPT No matching script"));
+        when(pipeline.evalsha(anyString(), anyList(), anyList())).thenReturn(noScript);
+
+        Response<String> value = mock(Response.class);
+        when(value.get()).thenReturn("value");
+        when(pipeline.get(KEY)).thenReturn(value);
+
+        connections = new AtomicInteger();
+        redisClient = new MultiplexedJedisClient(() -> {
+            connections.incrementAndGet();
+            return jedis;
+        }, LockMetrics.NOOP);
+    }
+
+    @After
+    public void tearDown() {
+        redisClient.close();
+    }
+
+    @Test
+    public void fallBackToEvalWithoutScript() {
+        when(jedis.evalsha(anyString(), anyList(), anyList())).thenThrow(new JedisNoScriptException("NOSCRIPT No matching script"));
+        when(jedis.eval(anyString(), anyList(), anyList())).thenReturn(1L);
+
+        assertTrue(redisClient.release(KEY, "value"));
+        assertEquals("value", redisClient.getLock(KEY));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void scriptErrorFailsOnlyItsCall() {
+        when(jedis.evalsha(anyString(), anyList(), anyList())).thenThrow(new JedisDataException("ERR Error running script"));
+
+        try {
+            redisClient.release(KEY, "value");
+            fail();
+        } catch (JedisDataException e) {
+            assertEquals("ERR Error running script", e.getMessage());
+        }
+        assertEquals("value", redisClient.getLock(KEY));
+        assertEquals(1, connections.get());
+        verify(jedis, never()).close();
+    }
+
+    @Test
+    public void reconnectAfterConnectionError() {
+        when(jedis.evalsha(anyString(), anyList(), anyList())).thenThrow(new JedisConnectionException("Unexpected end of stream"));
+
+        try {
+            redisClient.release(KEY, "value");
+            fail();
+        } catch (JedisConnectionException e) {
+            assertEquals("Unexpected end of stream", e.getMessage());
+        }
+        assertEquals("value", redisClient.getLock(KEY));
+        assertEquals(2, connections.get());
+        verify(jedis, times(1)).close();
+    }
+
+    @Test
+    public void closeWhenDispatcherDies() {
+        redisClient.close();
+        Supplier<Jedis> broken = () -> {
+            throw new Error("Dispatcher died");
+        };
+        redisClient = new MultiplexedJedisClient(broken, LockMetrics.NOOP);
+
+        try {
+            redisClient.getLock(KEY);
+            fail();
+        } catch (JedisConnectionException e) {
+            assertEquals("Client is closed", e.getMessage());
+        }
+        try {
+            redisClient.getLock(KEY);
+            fail();
+        } catch (JedisConnectionException e) {
+            assertEquals("Client is closed", e.getMessage());
+        }
+        verify(pipeline, never()).get(eq(KEY));
+    }
+}
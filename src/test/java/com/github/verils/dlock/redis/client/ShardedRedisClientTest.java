@@ -0,0 +1,249 @@
+package com.github.verils.dlock.redis.client;
+
+import com.github.verils.dlock.redis.InMemoryRedisClient;
+import com.github.verils.dlock.redis.RedisClient;
+import com.github.verils.dlock.redis.RedisFairLock;
+import com.github.verils.dlock.redis.RedisSession;
+import com.github.verils.dlock.redis.SessionRedisClient;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShardedRedisClientTest {
+
+    private static final int EXPIRE_IN_SECONDS = 5;
+    private static final int KEYS = 10000;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private Map<String, InMemoryRedisClient> shards;
+
+    private ShardedRedisClient redisClient;
+
+    @Before
+    public void setUp() {
+        shards = new LinkedHashMap<>();
+        for (int i = 1; i <= 4; i++) {
+            shards.put("redis-" + i, spy(new InMemoryRedisClient()));
+        }
+        redisClient = new ShardedRedisClient(shards);
+    }
+
+    @Test
+    public void hashTag() {
+        assertEquals("user1000", ShardedRedisClient.hashTag("{user1000}.following"));
+        assertEquals("bar", ShardedRedisClient.hashTag("foo{bar}{zap}"));
+        assertEquals("foo{}{bar}", ShardedRedisClient.hashTag("foo{}{bar}"));
+        assertEquals("{bar", ShardedRedisClient.hashTag("foo{{bar}}zap"));
+        assertEquals("lock:1", ShardedRedisClient.hashTag("lock:1"));
+    }
+
+    @Test
+    public void routeToOneShard() {
+        assertTrue(redisClient.tryAcquire("lock:1", "value", EXPIRE_IN_SECONDS));
+
+        RedisClient shard = redisClient.shardOf("lock:1");
+        for (InMemoryRedisClient candidate : shards.values()) {
+            assertEquals(candidate == shard ? "value" : null, candidate.getLock("lock:1"));
+        }
+        assertFalse(redisClient.tryAcquire("lock:1", "other", EXPIRE_IN_SECONDS));
+        assertEquals("value", redisClient.inspect("lock:1").getToken());
+        assertTrue(redisClient.release("lock:1", "value"));
+        assertNull(redisClient.inspect("lock:1"));
+    }
+
+    @Test
+    public void sameHashTagOnSameShard() {
+        List<String> keys = Arrays.asList("{order:1}:payment", "{order:1}:stock", "{order:1}:coupon");
+
+        assertEquals(-1, redisClient.tryAcquireAll(keys, "value", EXPIRE_IN_SECONDS));
+
+        InMemoryRedisClient shard = (InMemoryRedisClient) redisClient.shardOf("order:1");
+        verify(shard).tryAcquireAll(keys, "value", EXPIRE_IN_SECONDS);
+        for (InMemoryRedisClient other : shards.values()) {
+            if (other != shard) {
+                verify(other, never()).tryAcquireAll(anyList(), anyString(), anyInt());
+                verify(other, never()).tryAcquire(anyString(), anyString(), anyInt());
+            }
+        }
+        assertTrue(redisClient.releaseAll(keys, "value"));
+    }
+
+    @Test
+    public void renewAcrossShards() {
+        Map<String, String> locks = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            redisClient.tryAcquire("lock:" + i, "value", EXPIRE_IN_SECONDS);
+            locks.put("lock:" + i, "value");
+        }
+        locks.put("lock:missing", "value");
+
+        Set<String> renewed = redisClient.renew(locks, EXPIRE_IN_SECONDS);
+        assertEquals(100, renewed.size());
+        assertFalse(renewed.contains("lock:missing"));
+        for (InMemoryRedisClient shard : shards.values()) {
+            verify(shard).renew(eq(filterByShard(locks, shard)), eq(EXPIRE_IN_SECONDS));
+        }
+    }
+
+    @Test
+    public void routeFairLockByLockKey() throws InterruptedException {
+        RedisFairLock fairLock = new RedisFairLock(redisClient, "lock:1", EXPIRE_IN_SECONDS);
+        fairLock.lock();
+        fairLock.unlock();
+
+        InMemoryRedisClient shard = (InMemoryRedisClient) redisClient.shardOf("lock:1");
+        verify(shard).tryAcquireFair(eq("lock:1"), anyString(), eq(EXPIRE_IN_SECONDS), anyLong());
+        verify(shard).releaseFair(eq("lock:1"), anyString());
+
+        redisClient.subscribeTurn("lock:1", "value");
+        verify(shard).subscribeTurn("lock:1", "value");
+    }
+
+    @Test
+    public void binaryCommandsOnStringShards() {
+        byte[] key = "lock:1".getBytes(StandardCharsets.UTF_8);
+        byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(redisClient.tryAcquire(key, value, Duration.ofSeconds(EXPIRE_IN_SECONDS)));
+        assertEquals("value", redisClient.shardOf("lock:1").getLock("lock:1"));
+        assertArrayEquals(value, redisClient.getLock(key));
+        assertTrue(redisClient.release(key, value));
+    }
+
+    @Test
+    public void openSessionOnShardOfKey() {
+        Map<String, SessionRedisClient> sessionShards = new LinkedHashMap<>();
+        Map<SessionRedisClient, RedisSession> sessions = new HashMap<>();
+        for (int i = 1; i <= 4; i++) {
+            SessionRedisClient shard = mock(SessionRedisClient.class);
+            RedisSession session = mock(RedisSession.class);
+            when(shard.openSession()).thenReturn(session);
+            sessionShards.put("redis-" + i, shard);
+            sessions.put(shard, session);
+        }
+        ShardedRedisClient sharded = new ShardedRedisClient(sessionShards);
+        byte[] key = "lock:1".getBytes(StandardCharsets.UTF_8);
+        byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+        Duration lease = Duration.ofSeconds(EXPIRE_IN_SECONDS);
+
+        RedisSession session = sharded.openSession();
+        session.tryAcquire(key, value, lease);
+        session.release(key, value);
+        session.close();
+
+        SessionRedisClient shard = (SessionRedisClient) sharded.shardOf("lock:1");
+        verify(shard).openSession();
+        verify(sessions.get(shard)).tryAcquire(key, value, lease);
+        verify(sessions.get(shard)).release(key, value);
+        verify(sessions.get(shard)).close();
+        for (SessionRedisClient other : sessionShards.values()) {
+            if (other != shard) {
+                verify(other, never()).openSession();
+            }
+        }
+    }
+
+    @Test
+    public void spreadKeysEvenly() {
+        Map<RedisClient, Integer> counts = countKeys();
+        assertEquals(shards.size(), counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / shards.size() * 0.7);
+            assertTrue(count < KEYS / shards.size() * 1.3);
+        }
+    }
+
+    @Test
+    public void addShardMovesOnlyItsKeys() {
+        Map<String, RedisClient> before = locateKeys();
+        InMemoryRedisClient added = new InMemoryRedisClient();
+        redisClient.addShard("redis-5", added);
+
+        int moved = 0;
+        for (Map.Entry<String, RedisClient> entry : before.entrySet()) {
+            RedisClient shard = redisClient.shardOf(entry.getKey());
+            if (shard != entry.getValue()) {
+                assertSame(added, shard);
+                moved += 1;
+            }
+        }
+        assertTrue(moved > KEYS / 5 * 0.7);
+        assertTrue(moved < KEYS / 5 * 1.3);
+    }
+
+    @Test
+    public void removeShardMovesOnlyItsKeys() {
+        Map<String, RedisClient> before = locateKeys();
+        RedisClient removed = redisClient.removeShard("redis-2");
+
+        assertSame(shards.get("redis-2"), removed);
+        for (Map.Entry<String, RedisClient> entry : before.entrySet()) {
+            RedisClient shard = redisClient.shardOf(entry.getKey());
+            assertNotSame(removed, shard);
+            if (entry.getValue() != removed) {
+                assertSame(entry.getValue(), shard);
+            }
+        }
+    }
+
+    @Test
+    public void removeLastShard() {
+        ShardedRedisClient single = new ShardedRedisClient(Collections.singletonMap("redis-1", new InMemoryRedisClient()));
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Cannot remove the last shard");
+
+        single.removeShard("redis-1");
+    }
+
+    private Map<String, RedisClient> locateKeys() {
+        Map<String, RedisClient> located = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            located.put("lock:" + i, redisClient.shardOf("lock:" + i));
+        }
+        return located;
+    }
+
+    private Map<RedisClient, Integer> countKeys() {
+        Map<RedisClient, Integer> counts = new HashMap<>();
+        for (RedisClient shard : locateKeys().values()) {
+            counts.merge(shard, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private Map<String, String> filterByShard(Map<String, String> locks, RedisClient shard) {
+        Map<String, String> filtered = new HashMap<>();
+        for (Map.Entry<String, String> lock : locks.entrySet()) {
+            if (redisClient.shardOf(lock.getKey()) == shard) {
+                filtered.put(lock.getKey(), lock.getValue());
+            }
+        }
+        return filtered;
+    }
+}
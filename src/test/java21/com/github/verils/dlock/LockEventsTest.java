@@ -0,0 +1,109 @@
+package com.github.verils.dlock;
+
+import com.github.verils.dlock.redis.BackoffStrategy;
+import com.github.verils.dlock.redis.InMemoryRedisClient;
+import com.github.verils.dlock.redis.RedisReentrantLock;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LockEventsTest {
+
+    private static final String TEST_LOCK_KEY = "test:jfr";
+
+    @Test
+    public void recordRedisLockEvents() throws IOException, ExecutionException, InterruptedException {
+        InMemoryRedisClient redisClient = new InMemoryRedisClient();
+        RedisReentrantLock redisLock = new RedisReentrantLock(redisClient, TEST_LOCK_KEY, 5, BackoffStrategy.fixed(5));
+
+        List<RecordedEvent> events = record(() -> {
+            redisClient.tryAcquire(TEST_LOCK_KEY, "other", 5);
+            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+                redisLock.lock();
+                redisClient.release(TEST_LOCK_KEY);
+                try {
+                    redisLock.unlock();
+                    fail();
+                } catch (IllegalMonitorStateException e) {
+                    // 锁在持有期间被删除
+                }
+            });
+            TimeUnit.MILLISECONDS.sleep(50);
+            redisClient.release(TEST_LOCK_KEY, "other");
+            future.get();
+        });
+
+        RecordedEvent contended = find(events, "com.github.verils.dlock.LockContended");
+        assertEquals(TEST_LOCK_KEY, contended.getString("key"));
+
+        RecordedEvent acquired = find(events, "com.github.verils.dlock.LockAcquired");
+        assertEquals(TEST_LOCK_KEY, acquired.getString("key"));
+        assertEquals(RedisReentrantLock.class.getName(), acquired.getClass("lockClass").getName());
+        assertTrue(acquired.getDuration().toMillis() >= 50);
+        assertTrue(acquired.getInt("retries") > 0);
+
+        RecordedEvent lost = find(events, "com.github.verils.dlock.LeaseLost");
+        assertEquals("unlock", lost.getString("detectedBy"));
+    }
+
+    @Test
+    public void recordMutexEvents() throws IOException, ExecutionException, InterruptedException {
+        Mutex mutex = new Mutex();
+
+        List<RecordedEvent> events = record(() -> {
+            mutex.lock();
+            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+                mutex.lock();
+                mutex.unlock();
+            });
+            TimeUnit.MILLISECONDS.sleep(50);
+            mutex.unlock();
+            future.get();
+        });
+
+        find(events, "com.github.verils.dlock.LockContended");
+        RecordedEvent acquired = find(events, "com.github.verils.dlock.LockAcquired");
+        assertEquals(Mutex.class.getName(), acquired.getClass("lockClass").getName());
+        assertTrue(acquired.getDuration().toMillis() >= 20);
+    }
+
+    private static List<RecordedEvent> record(Action action) throws IOException, ExecutionException, InterruptedException {
+        Path file = Files.createTempFile("dlock", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.verils.dlock.LockAcquired").withThreshold(Duration.ofMillis(20));
+            recording.enable("com.github.verils.dlock.LockContended");
+            recording.enable("com.github.verils.dlock.LeaseLost");
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event recorded"));
+    }
+
+    private interface Action {
+
+        void run() throws ExecutionException, InterruptedException;
+    }
+}
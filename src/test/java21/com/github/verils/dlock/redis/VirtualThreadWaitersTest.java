@@ -0,0 +1,68 @@
+package com.github.verils.dlock.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 10000个虚拟线程同时等待同一个分布式锁，载体线程数由{@code jdk.virtualThreadScheduler.parallelism}限制为少数几个
+ */
+@Slf4j
+public class VirtualThreadWaitersTest {
+
+    private static final int WAITERS = 10_000;
+    private static final int LOCK_INSTANCES = 8;
+
+    @Test
+    public void test() throws InterruptedException {
+        RedisClient redis = new InMemoryRedisClient();
+        List<RedisReentrantLock> locks = new ArrayList<>();
+        for (int i = 0; i < LOCK_INSTANCES; i++) {
+            locks.add(new RedisReentrantLock(redis, "toilet:lock", 5, BackoffStrategy.fixed(1), null, 64));
+        }
+
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(WAITERS);
+        for (int i = 0; i < WAITERS; i++) {
+            RedisReentrantLock lock = locks.get(i % LOCK_INSTANCES);
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                lock.lock();
+                try {
+                    if (inside.incrementAndGet() != 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    count.incrementAndGet();
+                    inside.decrementAndGet();
+                } finally {
+                    lock.unlock();
+                }
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        assertEquals(WAITERS, count.get());
+        assertEquals(0, overlaps.get());
+        log.info("{} virtual waiters on {} carriers finished in {}ms", WAITERS,
+                System.getProperty("jdk.virtualThreadScheduler.parallelism"), elapsed / 1_000_000);
+    }
+}